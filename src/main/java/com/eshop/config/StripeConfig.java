@@ -1,17 +1,79 @@
 package com.eshop.config;
 
+import com.eshop.service.gateway.JdkHttpStripeClient;
 import com.stripe.Stripe;
+import com.stripe.net.ApiResource;
+import com.stripe.net.LiveStripeResponseGetter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
 
 @Configuration
 public class StripeConfig {
+    private final MeterRegistry meterRegistry;
+
     @Value("${stripe.secret-key}")
     private String secretKey;
 
+    @Value("${stripe.connect-timeout-ms}")
+    private int connectTimeoutMs;
+
+    @Value("${stripe.read-timeout-ms}")
+    private int readTimeoutMs;
+
+    @Value("${stripe.http.jdk-client.enabled}")
+    private boolean jdkClientEnabled;
+
+    @Value("${stripe.http.worker-threads}")
+    private int workerThreads;
+
+    @Value("${stripe.http.keep-alive-seconds}")
+    private int keepAliveSeconds;
+
+    @Value("${app.payment.gateway}")
+    private String gateway;
+
+    public StripeConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @PostConstruct
     public void initStripe() {
         Stripe.apiKey = secretKey;
+        // Bounds how long an abandoned call keeps its gateway bulkhead slot
+        Stripe.setConnectTimeout(connectTimeoutMs);
+        Stripe.setReadTimeout(readTimeoutMs);
+
+        if (jdkClientEnabled) {
+            JdkHttpStripeClient httpClient = new JdkHttpStripeClient(buildHttpClient(),
+                    Duration.ofMillis(readTimeoutMs), meterRegistry);
+            ApiResource.setGlobalResponseGetter(new LiveStripeResponseGetter(httpClient));
+            if ("stripe".equals(gateway)) {
+                httpClient.warmUp(Stripe.getApiBase());
+            }
+        }
+    }
+
+    private HttpClient buildHttpClient() {
+        // JVM-wide and read once, when the first java.net.http client is created; an explicit -D wins.
+        // Idle connections are dropped before Stripe's edge would close them under us.
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", String.valueOf(keepAliveSeconds));
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("stripe-http-");
+        threadFactory.setDaemon(true);
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(Executors.newFixedThreadPool(workerThreads, threadFactory))
+                .build();
     }
-}
\ No newline at end of file
+}
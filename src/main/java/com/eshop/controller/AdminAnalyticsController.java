@@ -0,0 +1,46 @@
+package com.eshop.controller;
+
+import com.eshop.model.dto.SalesAnalyticsResponse;
+import com.eshop.model.dto.TopProductsResponse;
+import com.eshop.model.entity.SalesRollup;
+import com.eshop.service.SalesRollupService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/admin/analytics")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminAnalyticsController {
+    private final SalesRollupService salesRollupService;
+
+    public AdminAnalyticsController(SalesRollupService salesRollupService) {
+        this.salesRollupService = salesRollupService;
+    }
+
+    // Defaults to the last 30 days, per day
+    @GetMapping("/sales")
+    public ResponseEntity<SalesAnalyticsResponse> getSales(
+            @RequestParam(defaultValue = "DAY") SalesRollup.Granularity granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "USD") String currency) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        return ResponseEntity.ok(salesRollupService.getSales(granularity, start, end, currency));
+    }
+
+    @GetMapping("/top-products")
+    public ResponseEntity<TopProductsResponse> getTopProducts(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "USD") String currency,
+            @RequestParam(defaultValue = "10") int limit) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        return ResponseEntity.ok(salesRollupService.getTopProducts(start, end, currency, limit));
+    }
+}
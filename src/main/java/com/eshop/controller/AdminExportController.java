@@ -0,0 +1,45 @@
+package com.eshop.controller;
+
+import com.eshop.exception.InvalidRequestException;
+import com.eshop.service.OrderExportService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/admin/exports")
+public class AdminExportController {
+    private final OrderExportService orderExportService;
+
+    public AdminExportController(OrderExportService orderExportService) {
+        this.orderExportService = orderExportService;
+    }
+
+    // Gzipped download, written while the rows are read
+    @GetMapping("/orders")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "CSV") OrderExportService.Format format) {
+        // Checked here, before the download starts: once the body streams an error can no longer become a 400
+        if (from.isAfter(to)) {
+            throw new InvalidRequestException("'from' must not be after 'to'");
+        }
+
+        String extension = format == OrderExportService.Format.CSV ? "csv" : "ndjson";
+        String filename = "orders-" + from + "_" + to + "." + extension + ".gz";
+
+        StreamingResponseBody body = out -> orderExportService.export(from, to, format, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .body(body);
+    }
+}
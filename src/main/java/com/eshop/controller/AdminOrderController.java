@@ -0,0 +1,25 @@
+package com.eshop.controller;
+
+import com.eshop.model.dto.BulkOrderStatusRequest;
+import com.eshop.model.dto.BulkOrderStatusResponse;
+import com.eshop.service.OrderStatusService;
+import jakarta.validation.Valid;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/admin/orders")
+public class AdminOrderController {
+    private final OrderStatusService orderStatusService;
+
+    public AdminOrderController(OrderStatusService orderStatusService) {
+        this.orderStatusService = orderStatusService;
+    }
+
+    @PostMapping("/status")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkOrderStatusResponse> updateStatuses(@Valid @RequestBody BulkOrderStatusRequest request) {
+        return ResponseEntity.ok(orderStatusService.bulkUpdate(request));
+    }
+}
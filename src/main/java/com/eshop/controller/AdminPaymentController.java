@@ -0,0 +1,30 @@
+package com.eshop.controller;
+
+import com.eshop.model.dto.PaymentReconciliationReport;
+import com.eshop.service.PaymentReconciliationService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/admin/payments")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminPaymentController {
+    private final PaymentReconciliationService paymentReconciliationService;
+
+    public AdminPaymentController(PaymentReconciliationService paymentReconciliationService) {
+        this.paymentReconciliationService = paymentReconciliationService;
+    }
+
+    @GetMapping("/reconciliation")
+    public ResponseEntity<PaymentReconciliationReport> getLastReconciliation() {
+        PaymentReconciliationReport report = paymentReconciliationService.getLastReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.noContent().build();
+    }
+
+    // Runs a reconciliation now, e.g. after a webhook outage; waits for it to finish
+    @PostMapping("/reconciliation")
+    public ResponseEntity<PaymentReconciliationReport> reconcile() {
+        return ResponseEntity.ok(paymentReconciliationService.reconcile());
+    }
+}
@@ -1,9 +1,14 @@
 package com.eshop.controller;
 
 import com.eshop.model.dto.AddToCartRequest;
+import com.eshop.model.dto.CartBatchRequest;
 import com.eshop.model.dto.CartResponse;
+import com.eshop.model.dto.CartValidationResponse;
 import com.eshop.security.UserPrincipal;
 import com.eshop.service.CartService;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -11,6 +16,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/cart")
@@ -31,10 +37,25 @@ public class CartController {
 
     @GetMapping
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<CartResponse> getCart() {
+    public ResponseEntity<CartResponse> getCart(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         UserPrincipal userPrincipal = (UserPrincipal) SecurityContextHolder
                 .getContext().getAuthentication().getPrincipal();
-        return ResponseEntity.ok(cartService.getCartResponse(userPrincipal.getId()));
+
+        // Client already holds the current version: answer with a bodiless 304
+        if (ifNoneMatch != null) {
+            Optional<String> tag = cartService.getCartTag(userPrincipal.getId());
+            if (tag.isPresent() && ifNoneMatch.contains(toETag(tag.get()))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(toETag(tag.get()))
+                        .build();
+            }
+        }
+
+        CartResponse response = cartService.getCartResponse(userPrincipal.getId());
+        return ResponseEntity.ok()
+                .eTag(toETag(CartResponse.tagOf(response.getCartId(), response.getVersion())))
+                .body(response);
     }
 
     @PutMapping("/items")
@@ -53,6 +74,23 @@ public class CartController {
         return ResponseEntity.ok(cartService.removeFromCart(userPrincipal.getId(), productId));
     }
 
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<CartResponse> applyBatch(@Valid @RequestBody CartBatchRequest request) {
+        UserPrincipal userPrincipal = (UserPrincipal) SecurityContextHolder
+                .getContext().getAuthentication().getPrincipal();
+        return ResponseEntity.ok(cartService.applyBatch(userPrincipal.getId(), request));
+    }
+
+    @PostMapping("/validate")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<CartValidationResponse> validateCart(
+            @RequestParam(defaultValue = "false") boolean reprice) {
+        UserPrincipal userPrincipal = (UserPrincipal) SecurityContextHolder
+                .getContext().getAuthentication().getPrincipal();
+        return ResponseEntity.ok(cartService.validateCart(userPrincipal.getId(), reprice));
+    }
+
     @PostMapping("/clear")
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<CartResponse> clearCart() {
@@ -67,5 +105,9 @@ public class CartController {
 
         return ResponseEntity.ok(emptyCartResponse);
     }
+
+    private String toETag(String tag) {
+        return "\"" + tag + "\"";
+    }
 }
 
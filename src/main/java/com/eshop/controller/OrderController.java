@@ -1,10 +1,12 @@
 package com.eshop.controller;
 
 import com.eshop.model.dto.CheckoutRequest;
+import com.eshop.model.dto.CheckoutStatusResponse;
 import com.eshop.model.dto.OrderResponse;
 import com.eshop.model.dto.PaymentResponse;
-import com.eshop.model.entity.Order;
 import com.eshop.security.UserPrincipal;
+import com.eshop.service.CheckoutPipeline;
+import com.eshop.service.IdempotencyService;
 import com.eshop.service.OrderService;
 import com.eshop.service.PaymentService;
 import com.eshop.util.SortingUtils;
@@ -12,6 +14,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -22,32 +25,56 @@ import org.springframework.web.bind.annotation.*;
 public class OrderController {
     private final OrderService orderService;
     private final PaymentService paymentService;
+    private final CheckoutPipeline checkoutPipeline;
+    private final IdempotencyService idempotencyService;
 
-    public OrderController(OrderService orderService, PaymentService paymentService) {
+    public OrderController(OrderService orderService, PaymentService paymentService,
+                           CheckoutPipeline checkoutPipeline, IdempotencyService idempotencyService) {
         this.orderService = orderService;
         this.paymentService = paymentService;
+        this.checkoutPipeline = checkoutPipeline;
+        this.idempotencyService = idempotencyService;
     }
 
     @PostMapping("/checkout")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<PaymentResponse> checkout(@RequestBody CheckoutRequest request) {
+    public ResponseEntity<PaymentResponse> checkout(
+            @RequestBody CheckoutRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         UserPrincipal userPrincipal = (UserPrincipal) SecurityContextHolder
                 .getContext().getAuthentication().getPrincipal();
 
-        // Create order with shipping info
-        Order order = orderService.checkout(userPrincipal.getId(), request.getShippingInfo());
+        // A retried request with the same key resumes from the order it created instead of placing a second one.
+        // The payment intent is found or created while the key is still held, so duplicates wait for it instead
+        // of racing to create it; a retry after a gateway failure finishes the payment step.
+        PaymentResponse paymentResponse = idempotencyService.execute(
+                "checkout", userPrincipal.getId(), idempotencyKey, request,
+                () -> orderService.checkout(userPrincipal.getId(), request.getShippingInfo()).getId(),
+                paymentService::getOrCreatePaymentIntent);
 
-        // Create payment intent with shipping info
-        PaymentResponse paymentResponse = paymentService.createPaymentIntent(
-                order.getId(),
-                order.getCurrency(),
-                request.getShippingInfo()
-        );
+        return ResponseEntity.ok(paymentResponse);
+    }
 
-        // Include the orderId in the response
-        paymentResponse.setOrderId(order.getId());
+    @PostMapping("/checkout/async")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<CheckoutStatusResponse> checkoutAsync(@RequestBody CheckoutRequest request) {
+        UserPrincipal userPrincipal = (UserPrincipal) SecurityContextHolder
+                .getContext().getAuthentication().getPrincipal();
 
-        return ResponseEntity.ok(paymentResponse);
+        // Queued for background processing; poll the status endpoint for the payment intent
+        CheckoutStatusResponse status = checkoutPipeline.submit(userPrincipal.getId(), request.getShippingInfo());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(status);
+    }
+
+    @GetMapping("/checkout/status/{ticketId}")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<CheckoutStatusResponse> getCheckoutStatus(@PathVariable String ticketId) {
+        UserPrincipal userPrincipal = (UserPrincipal) SecurityContextHolder
+                .getContext().getAuthentication().getPrincipal();
+
+        return checkoutPipeline.getStatus(ticketId, userPrincipal.getId())
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/my-orders")
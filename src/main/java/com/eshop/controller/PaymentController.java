@@ -2,63 +2,51 @@ package com.eshop.controller;
 
 import com.eshop.model.dto.PaymentRequest;
 import com.eshop.model.dto.PaymentResponse;
-import com.eshop.model.entity.Order;
-import com.eshop.service.OrderService;
+import com.eshop.security.UserPrincipal;
+import com.eshop.service.IdempotencyService;
 import com.eshop.service.PaymentService;
-import com.stripe.exception.StripeException;
-import com.stripe.model.PaymentIntent;
+import com.eshop.service.WebhookInboxService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
 @RequestMapping("/api/payments")
 public class PaymentController {
     private final PaymentService paymentService;
-    private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
+    private final WebhookInboxService webhookInboxService;
 
-    public PaymentController(PaymentService paymentService, OrderService orderService) {
+    public PaymentController(PaymentService paymentService, IdempotencyService idempotencyService,
+                             WebhookInboxService webhookInboxService) {
         this.paymentService = paymentService;
-        this.orderService = orderService;
+        this.idempotencyService = idempotencyService;
+        this.webhookInboxService = webhookInboxService;
     }
 
     @PostMapping("/create-payment-intent")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<PaymentResponse> createPaymentIntent(@RequestBody PaymentRequest request) {
-        Order order = orderService.getOrder(request.getOrderId());
+    public ResponseEntity<PaymentResponse> createPaymentIntent(
+            @RequestBody PaymentRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        UserPrincipal userPrincipal = (UserPrincipal) SecurityContextHolder
+                .getContext().getAuthentication().getPrincipal();
 
-        // If payment intent already exists, return it
-        try {
-            if (order.getPaymentId() != null) {
-                PaymentIntent existingIntent = PaymentIntent.retrieve(order.getPaymentId());
-                PaymentResponse response = new PaymentResponse();
-                response.setClientSecret(existingIntent.getClientSecret());
-                response.setPaymentIntentId(existingIntent.getId());
-                response.setOrderId(order.getId());
-                return ResponseEntity.ok(response);
-            }
-        } catch (StripeException e) {
-            // Create new payment intent if retrieval fails
-            return ResponseEntity.ok(paymentService.createPaymentIntent(
-                    order.getId(),
-                    order.getCurrency(),
-                    order.getShippingInfo()
-            ));
-        }
-
-        // If no payment intent exists, create new one
-        return ResponseEntity.ok(paymentService.createPaymentIntent(
-                order.getId(),
-                order.getCurrency(),
-                order.getShippingInfo()
-        ));
+        // The intent is created under the key and only the order id is kept; the response is rebuilt from it,
+        // which finds the intent just created, so no client secret is stored
+        return ResponseEntity.ok(idempotencyService.execute(
+                "payment-intent", userPrincipal.getId(), idempotencyKey, request,
+                () -> paymentService.getOrCreatePaymentIntent(request.getOrderId()).getOrderId(),
+                paymentService::getOrCreatePaymentIntent));
     }
 
     @PostMapping("/webhook")
     public ResponseEntity<String> handleStripeWebhook(
             @RequestBody String payload,
             @RequestHeader("Stripe-Signature") String sigHeader) {
-        paymentService.handleWebhook(payload, sigHeader);
+        // Stored and acknowledged right away; processing happens on the inbox workers
+        webhookInboxService.receive(payload, sigHeader);
         return ResponseEntity.ok().build();
     }
 }
\ No newline at end of file
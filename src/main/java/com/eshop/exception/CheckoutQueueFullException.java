@@ -0,0 +1,11 @@
+package com.eshop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class CheckoutQueueFullException extends RuntimeException {
+    public CheckoutQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -1,8 +1,10 @@
 package com.eshop.exception;
 
 import com.eshop.model.dto.ApiResponse;
+import com.eshop.service.gateway.PaymentGatewayUnavailableException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -71,6 +73,44 @@ public class GlobalExceptionHandler {
                 .body(new ApiResponse(false, "Password reset token is invalid or has expired"));
     }
 
+    @ExceptionHandler(CheckoutQueueFullException.class)
+    public ResponseEntity<ApiResponse> handleCheckoutQueueFullException(CheckoutQueueFullException e) {
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ApiResponse(false, e.getMessage()));
+    }
+
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<ApiResponse> handleIdempotencyConflictException(IdempotencyConflictException e) {
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ApiResponse(false, e.getMessage()));
+    }
+
+    @ExceptionHandler(IdempotencyKeyReuseException.class)
+    public ResponseEntity<ApiResponse> handleIdempotencyKeyReuseException(IdempotencyKeyReuseException e) {
+        return ResponseEntity
+                .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(new ApiResponse(false, e.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<ApiResponse> handleInvalidRequestException(InvalidRequestException e) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(new ApiResponse(false, e.getMessage()));
+    }
+
+    @ExceptionHandler(PaymentGatewayUnavailableException.class)
+    public ResponseEntity<ApiResponse> handlePaymentGatewayUnavailableException(PaymentGatewayUnavailableException e) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(new ApiResponse(false, "Payments are temporarily unavailable. Please try again shortly."));
+    }
+
     @ExceptionHandler(PasswordMismatchException.class)
     public ResponseEntity<ApiResponse> handlePasswordMismatchException(PasswordMismatchException e) {
         return ResponseEntity
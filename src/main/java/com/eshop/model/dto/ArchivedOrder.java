@@ -0,0 +1,17 @@
+package com.eshop.model.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// One line of an archive block: the rendered order plus the columns the order response leaves out
+@Getter
+@Setter
+public class ArchivedOrder {
+    private Long userId;
+    private String currency;
+    private String paymentId;
+    private LocalDateTime paidAt;
+    private OrderResponse order;
+}
@@ -0,0 +1,20 @@
+package com.eshop.model.dto;
+
+import com.eshop.model.entity.OrderStatus;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class BulkOrderStatusRequest {
+    @NotEmpty(message = "No order ids given")
+    private List<@NotNull(message = "Order id is required") Long> orderIds = new ArrayList<>();
+
+    @NotNull(message = "Target status is required")
+    private OrderStatus status;
+}
@@ -0,0 +1,38 @@
+package com.eshop.model.dto;
+
+import com.eshop.model.entity.OrderStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class BulkOrderStatusResponse {
+    private OrderStatus status;
+    private int updated;
+    private List<Result> results = new ArrayList<>();
+
+    public enum Outcome {
+        UPDATED,            // Moved to the requested status
+        UNCHANGED,          // Already in the requested status
+        NOT_FOUND,
+        INVALID_TRANSITION, // Current status does not allow the move
+        CONFLICT            // Status changed concurrently; re-check and retry
+    }
+
+    @Getter
+    @Setter
+    public static class Result {
+        private Long orderId;
+        private Outcome outcome;
+        private OrderStatus previousStatus;
+
+        public Result(Long orderId, Outcome outcome, OrderStatus previousStatus) {
+            this.orderId = orderId;
+            this.outcome = outcome;
+            this.previousStatus = previousStatus;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.eshop.model.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class CartBatchRequest {
+    // Applied in the order given
+    @NotNull(message = "Operations are required")
+    private List<@NotNull(message = "Operation is required") @Valid Operation> operations = new ArrayList<>();
+
+    public enum OperationType {
+        ADD,
+        UPDATE,
+        REMOVE
+    }
+
+    @Getter
+    @Setter
+    public static class Operation {
+        @NotNull(message = "Operation type is required")
+        private OperationType type;
+
+        @NotNull(message = "Product id is required")
+        private Long productId;
+
+        @Positive(message = "Quantity must be positive")
+        private Integer quantity;
+
+        // REMOVE is the only operation that needs no quantity
+        @AssertTrue(message = "Quantity is required for ADD and UPDATE")
+        public boolean isQuantityPresent() {
+            return type == OperationType.REMOVE || quantity != null;
+        }
+    }
+}
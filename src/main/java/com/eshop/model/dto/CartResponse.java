@@ -10,6 +10,14 @@ import java.util.List;
 public class CartResponse {
     private List<CartItemDTO> items;
     private BigDecimal total;
+    // Cart and version this response was rendered from; together they form the ETag, since a cart
+    // recreated after a purge starts again at version 0
+    private Long cartId;
+    private long version;
+
+    public static String tagOf(Long cartId, long version) {
+        return cartId + "-" + version;
+    }
 
     @Getter @Setter
     public static class CartItemDTO {
@@ -0,0 +1,29 @@
+package com.eshop.model.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Getter @Setter
+public class CartValidationResponse {
+    // True when every line is in stock at the price held in the cart
+    private boolean valid;
+    private boolean repriced;
+    private long version;
+    private BigDecimal total;
+    private List<LineDTO> lines;
+
+    @Getter @Setter
+    public static class LineDTO {
+        private Long productId;
+        private String productName;
+        private Integer quantity;
+        private Integer availableStock;
+        private boolean inStock;
+        private BigDecimal cartPrice;
+        private BigDecimal currentPrice;
+        private boolean priceChanged;
+    }
+}
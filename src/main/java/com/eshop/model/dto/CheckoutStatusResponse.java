@@ -0,0 +1,28 @@
+package com.eshop.model.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter @Setter
+public class CheckoutStatusResponse {
+    private String ticketId;
+    private Status status;
+    private Long orderId;
+    private String clientSecret;
+    private String paymentIntentId;
+    private ErrorCode errorCode;
+
+    public enum Status {
+        QUEUED,           // Accepted, waiting for an order worker
+        PLACING_ORDER,    // Reserving stock and persisting the order
+        CREATING_PAYMENT, // Order stored, creating the payment intent
+        COMPLETED,        // Payment intent ready, clientSecret is set
+        FAILED            // See errorCode; nothing was charged
+    }
+
+    public enum ErrorCode {
+        ORDER_FAILED,        // The order could not be placed (e.g. empty cart or out of stock); the cart is unchanged
+        PAYMENT_UNAVAILABLE, // The order exists but the payment provider is unavailable; retry its payment intent later
+        PAYMENT_FAILED       // The order exists but its payment intent could not be created
+    }
+}
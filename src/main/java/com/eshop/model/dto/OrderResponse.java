@@ -39,6 +39,7 @@ public class OrderResponse {
     // Inner class to represent order items
     @Getter @Setter
     public static class OrderItemDTO {
+        private Long productId;
         private String productName;
         private Integer quantity;
         private BigDecimal price;
@@ -0,0 +1,49 @@
+package com.eshop.model.dto;
+
+import com.eshop.model.entity.PaymentStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class PaymentReconciliationReport {
+    private Instant startedAt;
+    private Instant finishedAt;
+    private int ordersChecked;
+    private int repairedPaid;
+    private int repairedFailed;
+    private int lookupFailures;
+    // Stopped early because the payment gateway was unavailable
+    private boolean aborted;
+    // Capped; the counters above cover everything
+    private List<Discrepancy> discrepancies = new ArrayList<>();
+
+    public enum Action {
+        REPAIRED_PAID,      // Gateway shows the payment succeeded; order marked paid
+        REPAIRED_FAILED,    // Gateway shows the intent was canceled; order marked failed
+        LOOKUP_FAILED       // The intent could not be retrieved
+    }
+
+    @Getter
+    @Setter
+    public static class Discrepancy {
+        private Long orderId;
+        private String paymentIntentId;
+        private PaymentStatus localStatus;
+        private String gatewayStatus;
+        private Action action;
+
+        public Discrepancy(Long orderId, String paymentIntentId, PaymentStatus localStatus, String gatewayStatus,
+                           Action action) {
+            this.orderId = orderId;
+            this.paymentIntentId = paymentIntentId;
+            this.localStatus = localStatus;
+            this.gatewayStatus = gatewayStatus;
+            this.action = action;
+        }
+    }
+}
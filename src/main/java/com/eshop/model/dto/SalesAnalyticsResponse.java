@@ -0,0 +1,34 @@
+package com.eshop.model.dto;
+
+import com.eshop.model.entity.SalesRollup;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class SalesAnalyticsResponse {
+    private SalesRollup.Granularity granularity;
+    private String currency;
+    private BigDecimal totalRevenue;
+    private long totalOrders;
+    private long totalUnits;
+    private List<Point> points = new ArrayList<>();
+
+    // Buckets without sales are omitted
+    @Getter
+    @Setter
+    public static class Point {
+        private LocalDateTime bucketStart;
+        private long orders;
+        private long units;
+        private BigDecimal revenue;
+        private long refunds;
+        private BigDecimal refunded;
+        private BigDecimal netRevenue;
+    }
+}
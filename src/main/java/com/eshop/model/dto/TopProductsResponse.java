@@ -0,0 +1,28 @@
+package com.eshop.model.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class TopProductsResponse {
+    private LocalDate from;
+    private LocalDate to;
+    private String currency;
+    private List<ProductLine> products = new ArrayList<>();
+
+    // Units and revenue net of refunds
+    @Getter
+    @Setter
+    public static class ProductLine {
+        private Long productId;
+        private String productName;
+        private long units;
+        private BigDecimal revenue;
+    }
+}
@@ -1,15 +1,18 @@
 package com.eshop.model.entity;
 
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Entity
-@Table(name = "carts")
+@Table(name = "carts", indexes = @Index(name = "idx_carts_updated_at", columnList = "updated_at"))
 @Getter
 @Setter
 public class Cart {
@@ -17,7 +20,7 @@ public class Cart {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
@@ -25,5 +28,62 @@ public class Cart {
     private List<CartItem> items = new ArrayList<>();
 
     @Column(nullable = false)
-    private BigDecimal total = BigDecimal.ZERO;
+    @Convert(converter = MoneyConverter.class)
+    private Money total = Money.ZERO;
+
+    // Last time the cart was created or changed; used to purge abandoned carts
+    private LocalDateTime updatedAt;
+
+    // Bumped by CartService on every mutation, under the cart's row lock; keys the cached CartResponse
+    @Column(nullable = false)
+    private long version;
+
+    // Lookup of items by product id, built on first use and kept in sync by the item methods below
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Map<Long, CartItem> itemsByProductId;
+
+    @PrePersist
+    protected void onCreate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public void setItems(List<CartItem> items) {
+        this.items = items;
+        this.itemsByProductId = null;
+    }
+
+    public CartItem findItem(Long productId) {
+        return itemIndex().get(productId);
+    }
+
+    public void addItem(CartItem item) {
+        items.add(item);
+        itemIndex().put(item.getProduct().getId(), item);
+    }
+
+    public boolean removeItem(Long productId) {
+        CartItem item = itemIndex().remove(productId);
+        if (item == null) {
+            return false;
+        }
+        items.remove(item);
+        return true;
+    }
+
+    public void clearItems() {
+        items.clear();
+        itemsByProductId = null;
+    }
+
+    private Map<Long, CartItem> itemIndex() {
+        if (itemsByProductId == null) {
+            itemsByProductId = new HashMap<>();
+            for (CartItem item : items) {
+                itemsByProductId.put(item.getProduct().getId(), item);
+            }
+        }
+        return itemsByProductId;
+    }
 }
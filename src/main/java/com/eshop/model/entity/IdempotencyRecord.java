@@ -0,0 +1,68 @@
+package com.eshop.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@Entity
+@Table(name = "idempotency_keys",
+        uniqueConstraints = @UniqueConstraint(name = "uk_idempotency_scope_user_key",
+                columnNames = {"scope", "user_id", "idempotency_key"}),
+        indexes = @Index(name = "idx_idempotency_expires_at", columnList = "expires_at"))
+public class IdempotencyRecord {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 32)
+    private String scope;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    // SHA-256 of the first request's body; a retry with the same key must send the same request
+    @Column(length = 64)
+    private String requestHash;
+
+    // Identifies the claim that currently owns an IN_PROGRESS key
+    @Column(length = 36)
+    private String claimToken;
+
+    // Lease of an IN_PROGRESS claim, renewed while its owner runs; once it passes, the owner is presumed dead
+    // and the key can be taken over
+    private Instant lockedUntil;
+
+    // Id of what the first request created (the order), from which the response is rebuilt for retries.
+    // Only the id is kept, never the response, so no client secret is stored.
+    private Long resourceId;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    public boolean isExpired() {
+        return Instant.now().isAfter(expiresAt);
+    }
+
+    public boolean isLeaseExpired() {
+        return lockedUntil == null || Instant.now().isAfter(lockedUntil);
+    }
+
+    public enum Status {
+        IN_PROGRESS,
+        COMPLETED
+    }
+}
@@ -8,10 +8,15 @@ import lombok.Setter;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Currency;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders",
+        indexes = {
+                @Index(name = "idx_orders_intent_requested_at", columnList = "payment_intent_requested_at"),
+                @Index(name = "uk_orders_payment_id", columnList = "payment_id", unique = true)
+        })
 @Getter
 @Setter
 public class Order {
@@ -19,7 +24,7 @@ public class Order {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
@@ -27,6 +32,7 @@ public class Order {
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL)
     private List<OrderItem> items = new ArrayList<>();
 
+    // Stored as a plain amount in this order's currency, see getTotal()
     @Column(nullable = false)
     private BigDecimal total;
 
@@ -34,13 +40,18 @@ public class Order {
     private OrderStatus status = OrderStatus.PENDING;
 
     @Enumerated(EnumType.STRING)
-    private PaymentStatus paymentStatus = PaymentStatus.PENDING;    // PENDING, PAID, FAILED, REFUNDED
+    private PaymentStatus paymentStatus = PaymentStatus.PENDING;    // PENDING, PAID, FAILED, REFUNDED, REFUND_PENDING
 
-    private String paymentId;          // Stripe Payment Intent ID
+    @Column(name = "payment_id")
+    private String paymentId;          // Stripe Payment Intent ID, resolves webhooks to their order
     private BigDecimal totalAmount;    // Amount to be paid
     private String currency = "USD";   // Default currency
     private LocalDateTime paidAt;      // When payment was completed
 
+    // Set while a payment intent is being created at Stripe, cleared once its id is stored
+    @Column(name = "payment_intent_requested_at")
+    private LocalDateTime paymentIntentRequestedAt;
+
     private LocalDateTime createdAt;
 
     @Embedded
@@ -50,4 +61,20 @@ public class Order {
     protected void onCreate() {
         createdAt = LocalDateTime.now();
     }
+
+    public Money getTotal() {
+        return total == null ? null : Money.of(total, currencyUnit());
+    }
+
+    // The order takes the currency of its total, so the amount and currency columns always agree
+    public void setTotal(Money total) {
+        this.total = total == null ? null : total.toBigDecimal();
+        if (total != null) {
+            this.currency = total.getCurrency().getCurrencyCode();
+        }
+    }
+
+    Currency currencyUnit() {
+        return currency == null ? Money.DEFAULT_CURRENCY : Currency.getInstance(currency);
+    }
 }
\ No newline at end of file
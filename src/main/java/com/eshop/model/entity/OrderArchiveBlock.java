@@ -0,0 +1,38 @@
+package com.eshop.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Archived orders of one user from one archive run: their rendered OrderResponse JSON, one per line, gzipped
+@Entity
+@Table(name = "order_archive_blocks",
+        indexes = @Index(name = "idx_order_archive_blocks_user", columnList = "user_id"))
+@Getter
+@Setter
+public class OrderArchiveBlock {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private int orderCount;
+
+    @Column(nullable = false)
+    private LocalDateTime oldestCreatedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime newestCreatedAt;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] payload;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+}
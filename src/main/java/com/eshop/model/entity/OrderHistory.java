@@ -0,0 +1,38 @@
+package com.eshop.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Read model for /api/orders/my-orders: one row per order holding the rendered OrderResponse as JSON
+@Entity
+@Table(name = "order_history",
+        indexes = @Index(name = "idx_order_history_user_created", columnList = "user_id, created_at"))
+@Getter
+@Setter
+public class OrderHistory {
+    // Same id as the order it renders
+    @Id
+    private Long orderId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // Kept as columns so every allowed sort field can be served from this table;
+    // the amount is in the order's currency and only used for sorting
+    @Column(nullable = false)
+    private BigDecimal total;
+
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
+
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+}
@@ -17,17 +17,27 @@ public class OrderItem {
     private Long id;
 
     @JsonBackReference
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "order_id", nullable = false)
     private Order order;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", nullable = false)
     private Product product;
 
     @Column(nullable = false)
     private Integer quantity;
 
+    // Stored as a plain amount in the order's currency, see getPrice()
     @Column(nullable = false)
     private BigDecimal price;
+
+    public Money getPrice() {
+        return price == null ? null
+                : Money.of(price, order != null ? order.currencyUnit() : Money.DEFAULT_CURRENCY);
+    }
+
+    public void setPrice(Money price) {
+        this.price = price == null ? null : price.toBigDecimal();
+    }
 }
\ No newline at end of file
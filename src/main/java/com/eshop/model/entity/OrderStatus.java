@@ -5,5 +5,15 @@ public enum OrderStatus {
     PROCESSING,   // Payment confirmed, preparing order
     SHIPPED,      // Order has been shipped
     DELIVERED,    // Order has been delivered
-    CANCELLED    // Order was cancelled
+    CANCELLED;    // Order was cancelled
+
+    // DELIVERED and CANCELLED are terminal
+    public boolean canTransitionTo(OrderStatus next) {
+        return switch (this) {
+            case PENDING -> next == PROCESSING || next == CANCELLED;
+            case PROCESSING -> next == SHIPPED || next == CANCELLED;
+            case SHIPPED -> next == DELIVERED;
+            case DELIVERED, CANCELLED -> false;
+        };
+    }
 }
@@ -4,5 +4,6 @@ public enum PaymentStatus {
     PENDING,    // Payment not yet processed
     PAID,       // Payment successful
     FAILED,     // Payment failed
-    REFUNDED    // Payment was refunded
+    REFUNDED,   // Payment was refunded
+    REFUND_PENDING  // Paid after the order was cancelled; the money must be returned
 }
@@ -2,6 +2,7 @@ package com.eshop.model.entity;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -29,6 +30,7 @@ public class Product {
 
     @NotNull
     @DecimalMin("0.0")
+    @Digits(integer = 16, fraction = 2)
     private BigDecimal price;
 
     @NotNull
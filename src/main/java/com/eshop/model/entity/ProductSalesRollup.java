@@ -0,0 +1,49 @@
+package com.eshop.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// Units and revenue per product, day and currency, maintained by the payment webhook handlers
+@Entity
+@Table(name = "product_sales_rollup")
+@Getter
+@Setter
+public class ProductSalesRollup {
+    @EmbeddedId
+    private Key key;
+
+    @Column(nullable = false)
+    private long unitCount;
+
+    @Column(nullable = false)
+    private long revenueMinor;
+
+    @Column(nullable = false)
+    private long refundedUnits;
+
+    @Column(nullable = false)
+    private long refundedMinor;
+
+    @Embeddable
+    @Getter
+    @Setter
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate day;
+
+        private Long productId;
+
+        // Revenue is only summed within one currency
+        @Column(length = 3)
+        private String currency;
+    }
+}
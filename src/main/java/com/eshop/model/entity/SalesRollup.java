@@ -0,0 +1,58 @@
+package com.eshop.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// Paid and refunded totals per hour and per day, maintained by the payment webhook handlers
+@Entity
+@Table(name = "sales_rollup")
+@Getter
+@Setter
+public class SalesRollup {
+    @EmbeddedId
+    private Key key;
+
+    @Column(nullable = false)
+    private long orderCount;
+
+    @Column(nullable = false)
+    private long unitCount;
+
+    @Column(nullable = false)
+    private long revenueMinor;
+
+    @Column(nullable = false)
+    private long refundCount;
+
+    @Column(nullable = false)
+    private long refundedMinor;
+
+    public enum Granularity {
+        HOUR,
+        DAY
+    }
+
+    @Embeddable
+    @Getter
+    @Setter
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        @Enumerated(EnumType.STRING)
+        @Column(length = 8)
+        private Granularity granularity;
+
+        private LocalDateTime bucketStart;
+
+        @Column(length = 3)
+        private String currency;
+    }
+}
@@ -41,6 +41,14 @@ public class User {
     @Enumerated(EnumType.STRING)
     private Set<Role> roles = new HashSet<>();
 
+    // Embedded in access tokens; bumping it revokes every token issued before the change
+    @Column(name = "credentials_version", nullable = false)
+    private long credentialsVersion = 0L;
+
+    public void incrementCredentialsVersion() {
+        credentialsVersion++;
+    }
+
     // Track password reset functionality
     private String resetToken;
     private Instant resetTokenExpiry;
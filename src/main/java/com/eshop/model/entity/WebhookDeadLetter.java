@@ -0,0 +1,37 @@
+package com.eshop.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+// Events that kept failing after all retries, kept for manual inspection and replay
+@Getter
+@Setter
+@Entity
+@Table(name = "webhook_dead_letters")
+public class WebhookDeadLetter {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String eventId;
+
+    @Column(nullable = false, length = 64)
+    private String eventType;
+
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column(nullable = false)
+    private Instant failedAt;
+}
@@ -0,0 +1,68 @@
+package com.eshop.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+// Raw Stripe event as received; the unique event id makes redeliveries a no-op
+@Getter
+@Setter
+@Entity
+@Table(name = "webhook_inbox",
+        uniqueConstraints = @UniqueConstraint(name = "uk_webhook_inbox_event_id", columnNames = "event_id"),
+        indexes = {
+                @Index(name = "idx_webhook_inbox_status_id", columnList = "status, id"),
+                @Index(name = "idx_webhook_inbox_key_status_id", columnList = "ordering_key, status, id")
+        })
+public class WebhookInboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "event_id", nullable = false, length = 64)
+    private String eventId;
+
+    @Column(nullable = false, length = 64)
+    private String eventType;
+
+    // Events sharing a key (the payment intent) are processed one at a time, in arrival order
+    @Column(name = "ordering_key", nullable = false, length = 64)
+    private String orderingKey;
+
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant receivedAt;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt;
+
+    // A worker owns the event until then
+    private Instant leaseUntil;
+
+    // Set by every claim; a queued run whose claim was superseded after its lease ran out skips the event
+    @Column(length = 36)
+    private String claimToken;
+
+    private Instant processedAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    public enum Status {
+        PENDING,
+        PROCESSED,
+        DEAD
+    }
+}
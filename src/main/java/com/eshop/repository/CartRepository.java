@@ -1,10 +1,62 @@
 package com.eshop.repository;
 
 import com.eshop.model.entity.Cart;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByUserId(Long userId);
+
+    // Loads the cart, its items and their products in a single joined select
+    @EntityGraph(attributePaths = {"items", "items.product"})
+    Optional<Cart> findWithItemsByUserId(Long userId);
+
+    // Row lock on the cart alone (no joins, so product rows stay unlocked), taken before a mutation reads
+    // the cart so concurrent mutations of one cart are serialized and each commits its own version
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Cart c WHERE c.user.id = :userId")
+    Optional<Cart> lockByUserId(@Param("userId") Long userId);
+
+    // The id goes with the version: a cart purged and recreated for the user starts again at version 0
+    @Query("SELECT c.id AS cartId, c.version AS version FROM Cart c WHERE c.user.id = :userId")
+    Optional<CartVersion> findVersionByUserId(@Param("userId") Long userId);
+
+    // Carts created before updatedAt existed are stamped with the current time, so they age out
+    // from now on instead of all counting as idle at once
+    @Modifying
+    @Query("UPDATE Cart c SET c.updatedAt = :now WHERE c.updatedAt IS NULL")
+    int stampMissingUpdatedAt(@Param("now") LocalDateTime now);
+
+    // Keyset page of carts with no activity since the cutoff; a null updatedAt never counts as idle
+    @Query("SELECT c.id FROM Cart c WHERE c.id > :afterId AND c.updatedAt < :cutoff ORDER BY c.id")
+    List<Long> findIdleCartIds(@Param("afterId") Long afterId,
+                               @Param("cutoff") LocalDateTime cutoff,
+                               Pageable pageable);
+
+    // The idle condition is re-checked so a cart touched since it was selected is kept
+    @Modifying
+    @Query("DELETE FROM CartItem i WHERE i.cart.id IN (SELECT c.id FROM Cart c WHERE c.id IN :cartIds " +
+            "AND c.updatedAt < :cutoff)")
+    int deleteIdleCartItems(@Param("cartIds") Collection<Long> cartIds, @Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("DELETE FROM Cart c WHERE c.id IN :cartIds AND c.updatedAt < :cutoff")
+    int deleteIdleCarts(@Param("cartIds") Collection<Long> cartIds, @Param("cutoff") LocalDateTime cutoff);
+
+    interface CartVersion {
+        Long getCartId();
+
+        long getVersion();
+    }
 }
@@ -0,0 +1,55 @@
+package com.eshop.repository;
+
+import com.eshop.model.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+    Optional<IdempotencyRecord> findByScopeAndUserIdAndIdempotencyKey(String scope, Long userId, String idempotencyKey);
+
+    // Takes over an IN_PROGRESS key whose owner let its lease run out
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.claimToken = :token, r.lockedUntil = :lockedUntil " +
+            "WHERE r.id = :id AND r.status = :inProgress AND (r.lockedUntil IS NULL OR r.lockedUntil < :now)")
+    int takeOver(@Param("id") Long id, @Param("token") String token, @Param("lockedUntil") Instant lockedUntil,
+                 @Param("now") Instant now, @Param("inProgress") IdempotencyRecord.Status inProgress);
+
+    // The claim token guards both outcomes, so an owner whose key was taken over changes nothing
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = :completed, r.resourceId = :resourceId, r.lockedUntil = NULL " +
+            "WHERE r.id = :id AND r.claimToken = :token")
+    int complete(@Param("id") Long id, @Param("token") String token, @Param("resourceId") Long resourceId,
+                 @Param("completed") IdempotencyRecord.Status completed);
+
+    // Heartbeat of a running owner, so a slow request is not mistaken for a dead one
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.lockedUntil = :lockedUntil " +
+            "WHERE r.id = :id AND r.claimToken = :token AND r.status = :inProgress")
+    int renewLease(@Param("id") Long id, @Param("token") String token, @Param("lockedUntil") Instant lockedUntil,
+                   @Param("inProgress") IdempotencyRecord.Status inProgress);
+
+    // Records what the action created while the key stays IN_PROGRESS for the response step
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.resourceId = :resourceId WHERE r.id = :id AND r.claimToken = :token")
+    int recordResource(@Param("id") Long id, @Param("token") String token, @Param("resourceId") Long resourceId);
+
+    // Gives up the claim without forgetting the resource, so the next retry takes over right away
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.lockedUntil = NULL WHERE r.id = :id AND r.claimToken = :token")
+    int endLease(@Param("id") Long id, @Param("token") String token);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.claimToken = :token")
+    int release(@Param("id") Long id, @Param("token") String token);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+}
@@ -0,0 +1,29 @@
+package com.eshop.repository;
+
+import com.eshop.model.entity.OrderArchiveBlock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderArchiveBlockRepository extends JpaRepository<OrderArchiveBlock, Long> {
+    List<OrderArchiveBlock> findByUserIdOrderById(Long userId);
+
+    // Blocks that may hold orders created in [from, to), grouped by user
+    @Query("SELECT b.id FROM OrderArchiveBlock b WHERE b.newestCreatedAt >= :from AND b.oldestCreatedAt < :to " +
+            "ORDER BY b.userId, b.id")
+    List<Long> findIdsOverlapping(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Aggregated from the user's block headers only; the payloads are not read
+    @Query("SELECT COALESCE(SUM(b.orderCount), 0) AS count, MAX(b.newestCreatedAt) AS newestCreatedAt " +
+            "FROM OrderArchiveBlock b WHERE b.userId = :userId")
+    BlockSummary summarizeByUserId(@Param("userId") Long userId);
+
+    interface BlockSummary {
+        Long getCount();
+
+        LocalDateTime getNewestCreatedAt();
+    }
+}
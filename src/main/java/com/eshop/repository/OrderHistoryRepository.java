@@ -0,0 +1,34 @@
+package com.eshop.repository;
+
+import com.eshop.model.entity.OrderHistory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface OrderHistoryRepository extends JpaRepository<OrderHistory, Long> {
+    Page<OrderHistory> findByUserId(Long userId, Pageable pageable);
+
+    // Single-row MySQL upsert; a status change racing the backfill cannot collide on the insert
+    @Modifying
+    @Query(value = "INSERT INTO order_history (order_id, user_id, created_at, total, status, payload) " +
+            "VALUES (:orderId, :userId, :createdAt, :total, :status, :payload) " +
+            "ON DUPLICATE KEY UPDATE user_id = VALUES(user_id), created_at = VALUES(created_at), " +
+            "total = VALUES(total), status = VALUES(status), payload = VALUES(payload)", nativeQuery = true)
+    int upsert(@Param("orderId") Long orderId,
+               @Param("userId") Long userId,
+               @Param("createdAt") LocalDateTime createdAt,
+               @Param("total") BigDecimal total,
+               @Param("status") String status,
+               @Param("payload") String payload);
+
+    @Modifying
+    @Query("DELETE FROM OrderHistory h WHERE h.orderId IN :ids")
+    int deleteByOrderIdIn(@Param("ids") Collection<Long> ids);
+}
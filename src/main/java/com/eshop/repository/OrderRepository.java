@@ -1,10 +1,125 @@
 package com.eshop.repository;
 
 import com.eshop.model.entity.Order;
+import com.eshop.model.entity.OrderStatus;
+import com.eshop.model.entity.PaymentStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
     Page<Order> findByUserId(Long userId, Pageable pageable);
+
+    // Orders that have no order_history row yet, in id order
+    @Query("SELECT o.id FROM Order o WHERE o.id > :afterId " +
+            "AND NOT EXISTS (SELECT h.orderId FROM OrderHistory h WHERE h.orderId = o.id) ORDER BY o.id")
+    List<Long> findIdsWithoutHistory(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Locks the chunk for one backfill transaction; orders another node is backfilling are skipped
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT o FROM Order o WHERE o.id IN :ids " +
+            "AND NOT EXISTS (SELECT h.orderId FROM OrderHistory h WHERE h.orderId = o.id) ORDER BY o.id")
+    List<Order> lockWithoutHistory(@Param("ids") Collection<Long> ids);
+
+    // Completed orders old enough for the archive, in id order
+    @Query("SELECT o.id FROM Order o WHERE o.id > :afterId AND o.status IN :statuses " +
+            "AND o.createdAt < :cutoff ORDER BY o.id")
+    List<Long> findArchivableIds(@Param("afterId") Long afterId,
+                                 @Param("statuses") Collection<OrderStatus> statuses,
+                                 @Param("cutoff") LocalDateTime cutoff,
+                                 Pageable pageable);
+
+    // Locks the candidates that are still archivable, so none can change between being archived and deleted
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id IN :ids AND o.status IN :statuses AND o.createdAt < :cutoff " +
+            "ORDER BY o.id")
+    List<Order> lockArchivable(@Param("ids") Collection<Long> ids,
+                               @Param("statuses") Collection<OrderStatus> statuses,
+                               @Param("cutoff") LocalDateTime cutoff);
+
+    // The archivable condition is repeated so an order changed since it was read is never dropped
+    @Modifying
+    @Query("DELETE FROM OrderItem i WHERE i.order.id IN (SELECT o.id FROM Order o WHERE o.id IN :ids " +
+            "AND o.status IN :statuses AND o.createdAt < :cutoff)")
+    int deleteArchivableItems(@Param("ids") Collection<Long> ids,
+                              @Param("statuses") Collection<OrderStatus> statuses,
+                              @Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("DELETE FROM Order o WHERE o.id IN :ids AND o.status IN :statuses AND o.createdAt < :cutoff")
+    int deleteArchivable(@Param("ids") Collection<Long> ids,
+                         @Param("statuses") Collection<OrderStatus> statuses,
+                         @Param("cutoff") LocalDateTime cutoff);
+
+    @Query("SELECT o.id AS id, o.status AS status FROM Order o WHERE o.id IN :ids")
+    List<IdAndStatus> findStatusesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Guarded on the status that was validated, so a concurrent change is never overwritten
+    @Modifying
+    @Query("UPDATE Order o SET o.status = :to WHERE o.id IN :ids AND o.status = :from")
+    int updateStatus(@Param("ids") Collection<Long> ids,
+                     @Param("from") OrderStatus from,
+                     @Param("to") OrderStatus to);
+
+    // Orders whose payment intent creation started before staleBefore and never finished
+    @Query("SELECT o.id FROM Order o WHERE o.paymentIntentRequestedAt < :staleBefore " +
+            "ORDER BY o.paymentIntentRequestedAt")
+    List<Long> findIdsWithPendingPaymentIntent(@Param("staleBefore") LocalDateTime staleBefore, Pageable pageable);
+
+    // Orders with their items and products in one select
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.product WHERE o.id IN :ids")
+    List<Order> findWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Row locks on the orders alone (no joins, so product rows stay unlocked), in id order so concurrent
+    // payment writers (webhooks, reconciliation on any node) serialize without deadlocking
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id IN :ids ORDER BY o.id")
+    List<Order> lockByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.paymentId = :paymentId")
+    Optional<Order> lockByPaymentId(@Param("paymentId") String paymentId);
+
+    // Webhooks carry the payment intent id; uk_orders_payment_id makes this a single unique-index lookup
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.product WHERE o.paymentId = :paymentId")
+    Optional<Order> findWithItemsByPaymentId(@Param("paymentId") String paymentId);
+
+    // Keyset page of orders whose payment is still unsettled, oldest first
+    @Query("SELECT o.id AS id, o.paymentId AS paymentId, o.paymentStatus AS paymentStatus FROM Order o " +
+            "WHERE o.id > :afterId AND o.status IN :statuses AND o.paymentStatus = :paymentStatus " +
+            "AND o.paymentId IS NOT NULL AND o.createdAt >= :createdAfter AND o.createdAt < :createdBefore " +
+            "ORDER BY o.id")
+    List<PaymentCandidate> findPaymentReconciliationCandidates(@Param("afterId") Long afterId,
+                                                               @Param("statuses") Collection<OrderStatus> statuses,
+                                                               @Param("paymentStatus") PaymentStatus paymentStatus,
+                                                               @Param("createdAfter") LocalDateTime createdAfter,
+                                                               @Param("createdBefore") LocalDateTime createdBefore,
+                                                               Pageable pageable);
+
+    interface PaymentCandidate {
+        Long getId();
+
+        String getPaymentId();
+
+        PaymentStatus getPaymentStatus();
+    }
+
+    interface IdAndStatus {
+        Long getId();
+
+        OrderStatus getStatus();
+    }
 }
@@ -0,0 +1,48 @@
+package com.eshop.repository;
+
+import com.eshop.model.entity.ProductSalesRollup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ProductSalesRollupRepository extends JpaRepository<ProductSalesRollup, ProductSalesRollup.Key> {
+    @Modifying
+    @Query(value = "INSERT INTO product_sales_rollup (day, product_id, currency, unit_count, revenue_minor, " +
+            "refunded_units, refunded_minor) " +
+            "VALUES (:day, :productId, :currency, :units, :revenue, :refundedUnits, :refunded) " +
+            "ON DUPLICATE KEY UPDATE unit_count = unit_count + VALUES(unit_count), " +
+            "revenue_minor = revenue_minor + VALUES(revenue_minor), " +
+            "refunded_units = refunded_units + VALUES(refunded_units), " +
+            "refunded_minor = refunded_minor + VALUES(refunded_minor)", nativeQuery = true)
+    int add(@Param("day") LocalDate day,
+            @Param("productId") Long productId,
+            @Param("currency") String currency,
+            @Param("units") long units,
+            @Param("revenue") long revenue,
+            @Param("refundedUnits") long refundedUnits,
+            @Param("refunded") long refunded);
+
+    // Sums at most one row per product per day in the range
+    @Query("SELECT r.key.productId AS productId, SUM(r.unitCount - r.refundedUnits) AS units, " +
+            "SUM(r.revenueMinor - r.refundedMinor) AS revenueMinor FROM ProductSalesRollup r " +
+            "WHERE r.key.day >= :from AND r.key.day <= :to AND r.key.currency = :currency " +
+            "GROUP BY r.key.productId " +
+            "ORDER BY SUM(r.revenueMinor - r.refundedMinor) DESC")
+    List<ProductTotals> findTopProducts(@Param("from") LocalDate from,
+                                        @Param("to") LocalDate to,
+                                        @Param("currency") String currency,
+                                        Pageable pageable);
+
+    interface ProductTotals {
+        Long getProductId();
+
+        Long getUnits();
+
+        Long getRevenueMinor();
+    }
+}
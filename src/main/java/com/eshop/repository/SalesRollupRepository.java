@@ -0,0 +1,38 @@
+package com.eshop.repository;
+
+import com.eshop.model.entity.SalesRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, SalesRollup.Key> {
+    // Single-row MySQL upsert; concurrent webhooks add to the same bucket without a read-modify-write
+    @Modifying
+    @Query(value = "INSERT INTO sales_rollup (granularity, bucket_start, currency, order_count, unit_count, " +
+            "revenue_minor, refund_count, refunded_minor) " +
+            "VALUES (:granularity, :bucketStart, :currency, :orders, :units, :revenue, :refunds, :refunded) " +
+            "ON DUPLICATE KEY UPDATE order_count = order_count + VALUES(order_count), " +
+            "unit_count = unit_count + VALUES(unit_count), " +
+            "revenue_minor = revenue_minor + VALUES(revenue_minor), " +
+            "refund_count = refund_count + VALUES(refund_count), " +
+            "refunded_minor = refunded_minor + VALUES(refunded_minor)", nativeQuery = true)
+    int add(@Param("granularity") String granularity,
+            @Param("bucketStart") LocalDateTime bucketStart,
+            @Param("currency") String currency,
+            @Param("orders") long orders,
+            @Param("units") long units,
+            @Param("revenue") long revenue,
+            @Param("refunds") long refunds,
+            @Param("refunded") long refunded);
+
+    @Query("SELECT r FROM SalesRollup r WHERE r.key.granularity = :granularity AND r.key.currency = :currency " +
+            "AND r.key.bucketStart >= :from AND r.key.bucketStart < :to ORDER BY r.key.bucketStart")
+    List<SalesRollup> findRange(@Param("granularity") SalesRollup.Granularity granularity,
+                                @Param("currency") String currency,
+                                @Param("from") LocalDateTime from,
+                                @Param("to") LocalDateTime to);
+}
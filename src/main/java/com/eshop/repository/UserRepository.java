@@ -2,6 +2,8 @@ package com.eshop.repository;
 
 import com.eshop.model.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -10,4 +12,14 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     Optional<User> findByResetToken(String resetToken);
+
+    // Single-row lookup without the roles collection, used to check tokens against the current credentials
+    @Query("select u.credentialsVersion as credentialsVersion, u.enabled as enabled from User u where u.id = :id")
+    Optional<CredentialsState> findCredentialsStateById(@Param("id") Long id);
+
+    interface CredentialsState {
+        long getCredentialsVersion();
+
+        boolean isEnabled();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,7 @@
+package com.eshop.repository;
+
+import com.eshop.model.entity.WebhookDeadLetter;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface WebhookDeadLetterRepository extends JpaRepository<WebhookDeadLetter, Long> {
+}
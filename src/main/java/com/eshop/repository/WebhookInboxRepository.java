@@ -0,0 +1,44 @@
+package com.eshop.repository;
+
+import com.eshop.model.entity.WebhookInboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface WebhookInboxRepository extends JpaRepository<WebhookInboxEvent, Long> {
+    boolean existsByEventId(String eventId);
+
+    // Pending events that may run now: due, not leased, and the oldest unfinished event of their key. Filtering
+    // here rather than in memory keeps a page of backed-off or blocked events from starving the rest.
+    @Query("SELECT e FROM WebhookInboxEvent e WHERE e.status = :pending " +
+            "AND e.nextAttemptAt <= :now AND (e.leaseUntil IS NULL OR e.leaseUntil < :now) " +
+            "AND NOT EXISTS (SELECT 1 FROM WebhookInboxEvent p WHERE p.orderingKey = e.orderingKey " +
+            "AND p.status = :pending AND p.id < e.id) " +
+            "ORDER BY e.id")
+    List<WebhookInboxEvent> findDispatchable(@Param("now") Instant now,
+                                             @Param("pending") WebhookInboxEvent.Status pending,
+                                             Pageable pageable);
+
+    // Takes the lease only if the event is still pending and nobody else holds it
+    @Modifying
+    @Query("UPDATE WebhookInboxEvent e SET e.leaseUntil = :leaseUntil, e.claimToken = :token WHERE e.id = :id " +
+            "AND e.status = :pending AND (e.leaseUntil IS NULL OR e.leaseUntil < :now)")
+    int claim(@Param("id") Long id, @Param("token") String token, @Param("leaseUntil") Instant leaseUntil,
+              @Param("now") Instant now, @Param("pending") WebhookInboxEvent.Status pending);
+
+    // Extends the lease when the worker starts; fails if the event was claimed again meanwhile
+    @Modifying
+    @Query("UPDATE WebhookInboxEvent e SET e.leaseUntil = :leaseUntil WHERE e.id = :id AND e.claimToken = :token " +
+            "AND e.status = :pending")
+    int renewLease(@Param("id") Long id, @Param("token") String token, @Param("leaseUntil") Instant leaseUntil,
+                   @Param("pending") WebhookInboxEvent.Status pending);
+
+    @Modifying
+    @Query("DELETE FROM WebhookInboxEvent e WHERE e.status <> :pending AND e.receivedAt < :cutoff")
+    int deleteFinishedBefore(@Param("cutoff") Instant cutoff, @Param("pending") WebhookInboxEvent.Status pending);
+}
@@ -0,0 +1,68 @@
+package com.eshop.security;
+
+import com.eshop.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Current credentials version and enabled flag per user, checked against the version embedded in each access
+// token. Bounded LRU with a TTL: changes made on this node are applied immediately, and the TTL bounds how
+// long another node keeps accepting tokens revoked elsewhere.
+@Component
+public class CredentialsVersionCache {
+    private final UserRepository userRepository;
+    private final Map<Long, CachedState> entries;
+    private final long ttlMs;
+
+    public CredentialsVersionCache(UserRepository userRepository,
+                                   @Value("${jwt.credentials-version-cache.max-entries}") int maxEntries,
+                                   @Value("${jwt.credentials-version-cache.ttl-ms}") long ttlMs) {
+        this.userRepository = userRepository;
+        this.ttlMs = ttlMs;
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedState> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    public boolean isCurrent(Long userId, long credentialsVersion) {
+        CachedState cached = entries.get(userId);
+        if (cached == null || cached.expiresAt() < System.currentTimeMillis()) {
+            cached = userRepository.findCredentialsStateById(userId)
+                    .map(state -> update(userId, state.getCredentialsVersion(), state.isEnabled()))
+                    .orElse(null);
+        }
+        return cached != null && cached.enabled() && cached.credentialsVersion() == credentialsVersion;
+    }
+
+    // Publish only once the bump is committed, so a rolled back change can't reject the user's valid tokens
+    public void credentialsChanged(Long userId, long credentialsVersion, boolean enabled) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update(userId, credentialsVersion, enabled);
+                }
+            });
+        } else {
+            update(userId, credentialsVersion, enabled);
+        }
+    }
+
+    // Versions only go up, so a lookup that read the row before a concurrent bump can't overwrite the newer value
+    private CachedState update(Long userId, long credentialsVersion, boolean enabled) {
+        CachedState state = new CachedState(credentialsVersion, enabled, System.currentTimeMillis() + ttlMs);
+        return entries.merge(userId, state,
+                (existing, loaded) -> loaded.credentialsVersion() >= existing.credentialsVersion() ? loaded : existing);
+    }
+
+    private record CachedState(long credentialsVersion, boolean enabled, long expiresAt) {
+    }
+}
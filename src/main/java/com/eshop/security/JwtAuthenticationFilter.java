@@ -1,11 +1,13 @@
 package com.eshop.security;
 
 import com.eshop.service.TokenBlacklistService;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -24,11 +26,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtTokenProvider tokenProvider;
     private final CustomUserDetailsService userDetailsService;
     private final TokenBlacklistService tokenBlacklistService;
+    private final CredentialsVersionCache credentialsVersionCache;
+    private final boolean statelessAuth;
 
-    public JwtAuthenticationFilter(JwtTokenProvider tokenProvider, CustomUserDetailsService userDetailsService, TokenBlacklistService tokenBlacklistService) {
+    public JwtAuthenticationFilter(JwtTokenProvider tokenProvider, CustomUserDetailsService userDetailsService, TokenBlacklistService tokenBlacklistService,
+                                   CredentialsVersionCache credentialsVersionCache,
+                                   @Value("${jwt.stateless-auth.enabled}") boolean statelessAuth) {
         this.tokenProvider = tokenProvider;
         this.userDetailsService = userDetailsService;
         this.tokenBlacklistService = tokenBlacklistService;
+        this.credentialsVersionCache = credentialsVersionCache;
+        this.statelessAuth = statelessAuth;
     }
 
     @Override
@@ -43,10 +51,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                     throw new JwtException("Token is blacklisted");
                 }
 
-                // This will throw an exception if token is invalid
-                if (tokenProvider.validateToken(jwt)) {
-                    String username = tokenProvider.getUsernameFromToken(jwt);
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                // Null if the token is invalid; signature and expiry are checked once per token
+                Claims claims = tokenProvider.getVerifiedClaims(jwt);
+                if (claims != null) {
+                    UserDetails userDetails = loadUser(claims);
 
                     UsernamePasswordAuthenticationToken authentication =
                             new UsernamePasswordAuthenticationToken(
@@ -64,6 +72,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    // In stateless mode the principal comes from the token claims; only the credentials version is checked,
+    // so a password change or a disabled account still revokes the tokens issued before it
+    private UserDetails loadUser(Claims claims) {
+        UserPrincipal principal = statelessAuth ? tokenProvider.getPrincipalFromClaims(claims) : null;
+        if (principal == null) {
+            return userDetailsService.loadUserByUsername(claims.getSubject());
+        }
+        if (!credentialsVersionCache.isCurrent(principal.getId(), principal.getCredentialsVersion())) {
+            throw new JwtException("Token credentials have been revoked");
+        }
+        return principal;
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
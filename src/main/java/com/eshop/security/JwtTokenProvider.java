@@ -7,17 +7,36 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Component
 public class JwtTokenProvider {
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String NAME_CLAIM = "name";
+    private static final String ROLES_CLAIM = "roles";
+    private static final String CREDENTIALS_VERSION_CLAIM = "cv";
     private SecretKey key;
+    // Immutable once built, so one instance is shared by all request threads
+    private JwtParser parser;
+    // Claims of tokens whose signature was already checked, keyed by a hash of the token.
+    // Bounded LRU; an entry is only served until the token itself expires.
+    private Map<String, VerifiedClaims> verifiedTokens;
 
     @Value("${jwt.expiration}")
     private int jwtExpirationInMs;
@@ -25,9 +44,22 @@ public class JwtTokenProvider {
     @Value("${jwt.secret}")
     private String jwtSecret;
 
+    @Value("${jwt.claims-cache.max-entries:10000}")
+    private int claimsCacheMaxEntries;
+
     @PostConstruct
     public void init() {
         this.key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+        int maxEntries = claimsCacheMaxEntries;
+        this.verifiedTokens = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VerifiedClaims> eldest) {
+                return size() > maxEntries;
+            }
+        });
     }
 
     public String generateToken(Authentication authentication) {
@@ -35,45 +67,111 @@ public class JwtTokenProvider {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpirationInMs);
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(userPrincipal.getUsername())
                 .setIssuedAt(now)
-                .setExpiration(expiryDate)
-                .signWith(key)
-                .compact();
-    }
+                .setExpiration(expiryDate);
 
-    public String getUsernameFromToken(String token) {
-        try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-
-            return claims.getSubject();
-        } catch (Exception e) {
-            logger.error("Error getting username from token", e);
-            throw new JwtException("Invalid token");
+        // Everything the filter needs to rebuild the principal without loading the user
+        if (userPrincipal instanceof UserPrincipal principal) {
+            builder.claim(USER_ID_CLAIM, principal.getId())
+                    .claim(NAME_CLAIM, principal.getFullName())
+                    .claim(ROLES_CLAIM, principal.getAuthorities().stream()
+                            .map(GrantedAuthority::getAuthority)
+                            .toList())
+                    .claim(CREDENTIALS_VERSION_CLAIM, principal.getCredentialsVersion());
         }
+
+        return builder.signWith(key).compact();
     }
 
-    public boolean validateToken(String token) {
+    // Validates the token and returns its claims in one pass, or null when the token is not valid
+    public Claims getVerifiedClaims(String token) {
+        if (!StringUtils.hasText(token)) {
+            logger.error("JWT claims string is empty");
+            return null;
+        }
+
+        String tokenHash = hash(token);
+        VerifiedClaims cached = verifiedTokens.get(tokenHash);
+        if (cached != null) {
+            if (cached.expiresAt() > System.currentTimeMillis()) {
+                return cached.claims();
+            }
+            verifiedTokens.remove(tokenHash);
+        }
+
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            if (claimsCacheMaxEntries > 0 && claims.getExpiration() != null) {
+                verifiedTokens.put(tokenHash, new VerifiedClaims(claims, claims.getExpiration().getTime()));
+            }
+            return claims;
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token", e);
         } catch (ExpiredJwtException e) {
             logger.error("Expired JWT token", e);
         } catch (UnsupportedJwtException e) {
             logger.error("Unsupported JWT token", e);
+        } catch (JwtException e) {
+            logger.error("JWT signature validation failed", e);
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty", e);
         }
-        return false;
+        return null;
+    }
+
+    // Null for tokens issued without the user claims, which still need the user to be loaded
+    public UserPrincipal getPrincipalFromClaims(Claims claims) {
+        Long userId = claims.get(USER_ID_CLAIM, Long.class);
+        Long credentialsVersion = claims.get(CREDENTIALS_VERSION_CLAIM, Long.class);
+        List<?> roles = claims.get(ROLES_CLAIM, List.class);
+        if (userId == null || credentialsVersion == null || roles == null) {
+            return null;
+        }
+
+        List<GrantedAuthority> authorities = roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role.toString()))
+                .toList();
+
+        return new UserPrincipal(
+                userId,
+                claims.getSubject(),
+                null,
+                claims.get(NAME_CLAIM, String.class),
+                true,
+                authorities,
+                credentialsVersion
+        );
+    }
+
+    public String getUsernameFromToken(String token) {
+        Claims claims = getVerifiedClaims(token);
+        if (claims == null) {
+            throw new JwtException("Invalid token");
+        }
+        return claims.getSubject();
+    }
+
+    public boolean validateToken(String token) {
+        return getVerifiedClaims(token) != null;
+    }
+
+    public void evictVerifiedToken(String token) {
+        if (StringUtils.hasText(token)) {
+            verifiedTokens.remove(hash(token));
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+
+    private record VerifiedClaims(Claims claims, long expiresAt) {
     }
-}
\ No newline at end of file
+}
@@ -20,7 +20,6 @@ import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.Arrays;
-import java.util.Collections;
 
 @Configuration
 @EnableWebSecurity
@@ -38,6 +37,7 @@ public class SecurityConfig {
             "/api/products/**",
             "/api/auth/forgot-password",
             "/api/auth/reset-password",
+            "/api/payments/webhook",  // Authenticated by the webhook signature
             "/images/**",  // Allow access to default images
             "/uploads/**"  // Allow access to uploaded images
     };
@@ -93,9 +93,11 @@ public class SecurityConfig {
                 "Origin",              // Required for CORS
                 "Access-Control-Request-Method",  // Required for preflight requests
                 "Access-Control-Request-Headers", // Required for preflight requests
-                "X-Requested-With"     // For XMLHttpRequest/AJAX requests
+                "X-Requested-With",    // For XMLHttpRequest/AJAX requests
+                "If-None-Match",       // For conditional cart reads
+                "Idempotency-Key"      // For safely retrying checkout and payment requests
         ));
-        configuration.setExposedHeaders(Collections.singletonList("Authorization"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "ETag"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
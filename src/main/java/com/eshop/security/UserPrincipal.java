@@ -19,15 +19,17 @@ public class UserPrincipal implements UserDetails {
     private String fullName;
     private boolean enabled;
     private Collection<? extends GrantedAuthority> authorities;
+    private long credentialsVersion;
 
     public UserPrincipal(Long id, String email, String password, String fullName, boolean enabled,
-                         Collection<? extends GrantedAuthority> authorities) {
+                         Collection<? extends GrantedAuthority> authorities, long credentialsVersion) {
         this.id = id;
         this.email = email;
         this.password = password;
         this.fullName = fullName;
         this.enabled = enabled;
         this.authorities = authorities;
+        this.credentialsVersion = credentialsVersion;
     }
 
     public static UserPrincipal create(User user) {
@@ -41,7 +43,8 @@ public class UserPrincipal implements UserDetails {
                 user.getPassword(),
                 user.getFullName(),
                 user.isEnabled(),
-                authorities
+                authorities,
+                user.getCredentialsVersion()
         );
     }
 
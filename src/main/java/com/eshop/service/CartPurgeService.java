@@ -0,0 +1,104 @@
+package com.eshop.service;
+
+import com.eshop.repository.CartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+@ConditionalOnProperty(name = "app.cart.purge.enabled", havingValue = "true", matchIfMissing = true)
+public class CartPurgeService {
+    private static final Logger logger = LoggerFactory.getLogger(CartPurgeService.class);
+
+    private final CartRepository cartRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter purgedCarts;
+    private final Counter purgedItems;
+
+    @Value("${app.cart.purge.max-age-days}")
+    private int maxAgeDays;
+
+    @Value("${app.cart.purge.chunk-size}")
+    private int chunkSize;
+
+    @Value("${app.cart.purge.pause-ms}")
+    private long pauseMs;
+
+    @Value("${app.cart.purge.max-chunks-per-run}")
+    private int maxChunksPerRun;
+
+    public CartPurgeService(CartRepository cartRepository,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry) {
+        this.cartRepository = cartRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.purgedCarts = Counter.builder("cart.purge.carts")
+                .description("Abandoned carts deleted")
+                .register(meterRegistry);
+        this.purgedItems = Counter.builder("cart.purge.items")
+                .description("Cart items deleted with abandoned carts")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.cart.purge.cron}")
+    public void purgeAbandonedCarts() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minusDays(maxAgeDays);
+
+        // No-op index probe once every legacy cart has been stamped
+        Integer stamped = transactionTemplate.execute(status -> cartRepository.stampMissingUpdatedAt(now));
+        if (stamped != null && stamped > 0) {
+            logger.info("Stamped {} carts without an updatedAt; they become purgeable after {} days", stamped, maxAgeDays);
+        }
+
+        long lastId = 0L;
+        int totalCarts = 0;
+        int totalItems = 0;
+
+        for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+            List<Long> cartIds = cartRepository.findIdleCartIds(lastId, cutoff, PageRequest.of(0, chunkSize));
+            if (cartIds.isEmpty()) {
+                break;
+            }
+
+            // Each chunk is its own short transaction so locks are held only briefly
+            int[] deleted = transactionTemplate.execute(status -> new int[]{
+                    cartRepository.deleteIdleCartItems(cartIds, cutoff),
+                    cartRepository.deleteIdleCarts(cartIds, cutoff)
+            });
+
+            purgedItems.increment(deleted[0]);
+            purgedCarts.increment(deleted[1]);
+            totalItems += deleted[0];
+            totalCarts += deleted[1];
+            lastId = cartIds.get(cartIds.size() - 1);
+
+            if (cartIds.size() < chunkSize) {
+                break;
+            }
+
+            // Throttle between chunks so the purge does not saturate the primary
+            try {
+                Thread.sleep(pauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (totalCarts > 0) {
+            logger.info("Purged {} abandoned carts and {} cart items idle since {}", totalCarts, totalItems, cutoff);
+        }
+    }
+}
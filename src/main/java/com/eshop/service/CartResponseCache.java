@@ -0,0 +1,46 @@
+package com.eshop.service;
+
+import com.eshop.model.dto.CartResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Rendered cart responses keyed by user, valid only for the cart (id and version) they were built from.
+// Bounded LRU so memory stays flat regardless of how many users touch their cart.
+@Component
+public class CartResponseCache {
+    private final Map<Long, CachedCart> entries;
+
+    public CartResponseCache(@Value("${app.cart.response-cache.max-entries}") int maxEntries) {
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedCart> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    public boolean contains(Long userId) {
+        return entries.containsKey(userId);
+    }
+
+    public CartResponse get(Long userId, Long cartId, long version) {
+        CachedCart cached = entries.get(userId);
+        return cached != null && cached.cartId().equals(cartId) && cached.version() == version
+                ? cached.response() : null;
+    }
+
+    public void put(Long userId, CartResponse response) {
+        entries.put(userId, new CachedCart(response.getCartId(), response.getVersion(), response));
+    }
+
+    public void evict(Long userId) {
+        entries.remove(userId);
+    }
+
+    private record CachedCart(Long cartId, long version, CartResponse response) {
+    }
+}
@@ -1,18 +1,28 @@
 package com.eshop.service;
 
 import com.eshop.model.dto.AddToCartRequest;
+import com.eshop.model.dto.CartBatchRequest;
 import com.eshop.model.dto.CartResponse;
+import com.eshop.model.dto.CartValidationResponse;
 import com.eshop.model.entity.Cart;
 import com.eshop.model.entity.CartItem;
+import com.eshop.model.entity.Money;
 import com.eshop.model.entity.Product;
 import com.eshop.repository.CartRepository;
 import com.eshop.repository.ProductRepository;
 import com.eshop.repository.UserRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,62 +32,151 @@ public class CartService {
     private final CartRepository cartRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
+    private final CartResponseCache cartResponseCache;
 
-    public CartService(CartRepository cartRepository, ProductRepository productRepository, UserRepository userRepository) {
+    public CartService(CartRepository cartRepository, ProductRepository productRepository,
+                       UserRepository userRepository, CartResponseCache cartResponseCache) {
         this.cartRepository = cartRepository;
         this.productRepository = productRepository;
         this.userRepository = userRepository;
+        this.cartResponseCache = cartResponseCache;
     }
 
     public CartResponse getCartResponse(Long userId) {
+        // Only pay for the version lookup when there is something cached to validate
+        if (cartResponseCache.contains(userId)) {
+            Optional<CartRepository.CartVersion> version = cartRepository.findVersionByUserId(userId);
+            if (version.isPresent()) {
+                CartResponse cached = cartResponseCache.get(userId, version.get().getCartId(),
+                        version.get().getVersion());
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+
         Cart cart = getOrCreateCart(userId);
-        return createCartResponse(cart);
+        return cacheResponse(userId, createCartResponse(cart));
     }
 
-    public CartResponse updateCartItem(Long userId, AddToCartRequest request) {
-        Cart cart = getOrCreateCart(userId);
-        CartItem cartItem = cart.getItems().stream()
-                .filter(item -> item.getProduct().getId().equals(request.getProductId()))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("Item not in cart"));
+    @Transactional(readOnly = true)
+    public Optional<String> getCartTag(Long userId) {
+        return cartRepository.findVersionByUserId(userId)
+                .map(version -> CartResponse.tagOf(version.getCartId(), version.getVersion()));
+    }
 
-        cartItem.setQuantity(request.getQuantity());
-        updateCartTotal(cart);
-        cartRepository.save(cart);
+    public CartResponse updateCartItem(Long userId, AddToCartRequest request) {
+        Cart cart = getOrCreateCartForUpdate(userId);
+        updateItem(cart, request.getProductId(), request.getQuantity());
+        markModified(cart);
 
-        return createCartResponse(cart);
+        return cacheResponse(userId, createCartResponse(cart));
     }
 
     public CartResponse removeFromCart(Long userId, Long productId) {
-        Cart cart = getOrCreateCart(userId);
-        cart.getItems().removeIf(item -> item.getProduct().getId().equals(productId));
-        updateCartTotal(cart);
-        cartRepository.save(cart);
+        Cart cart = getOrCreateCartForUpdate(userId);
+        cart.removeItem(productId);
+        markModified(cart);
 
-        return createCartResponse(cart);
+        return cacheResponse(userId, createCartResponse(cart));
     }
 
     public CartResponse addToCart(Long userId, AddToCartRequest request) {
-        Cart cart = getOrCreateCart(userId);
+        Cart cart = getOrCreateCartForUpdate(userId);
         Product product = productRepository.findById(request.getProductId())
                 .orElseThrow(() -> new RuntimeException("Product not found"));
 
-        if (product.getStockQuantity() < request.getQuantity()) {
-            throw new RuntimeException("Not enough stock");
+        addItem(cart, product, request.getQuantity());
+        markModified(cart);
+
+        return cacheResponse(userId, createCartResponse(cart));
+    }
+
+    public CartResponse applyBatch(Long userId, CartBatchRequest request) {
+        Cart cart = getOrCreateCartForUpdate(userId);
+
+        // Fetch every product referenced by an ADD in one query
+        Set<Long> productIds = request.getOperations().stream()
+                .filter(operation -> operation.getType() == CartBatchRequest.OperationType.ADD)
+                .map(CartBatchRequest.Operation::getProductId)
+                .collect(Collectors.toSet());
+        Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        for (CartBatchRequest.Operation operation : request.getOperations()) {
+            if (operation.getType() == null) {
+                throw new RuntimeException("Operation type is required");
+            }
+            switch (operation.getType()) {
+                case ADD -> {
+                    Product product = products.get(operation.getProductId());
+                    if (product == null) {
+                        throw new RuntimeException("Product not found");
+                    }
+                    addItem(cart, product, operation.getQuantity());
+                }
+                case UPDATE -> updateItem(cart, operation.getProductId(), operation.getQuantity());
+                case REMOVE -> cart.removeItem(operation.getProductId());
+            }
         }
 
-        CartItem cartItem = findOrCreateCartItem(cart, product);
-        cartItem.setQuantity(cartItem.getQuantity() + request.getQuantity());
-        cartItem.setPrice(product.getPrice());
+        // Totals are recomputed once for the whole batch
+        markModified(cart);
 
-        updateCartTotal(cart);
-        cartRepository.save(cart);
+        return cacheResponse(userId, createCartResponse(cart));
+    }
+
+    // Checks every line against current stock and price using the single cart fetch,
+    // optionally moving drifted lines to the current price
+    public CartValidationResponse validateCart(Long userId, boolean reprice) {
+        Cart cart = reprice ? getOrCreateCartForUpdate(userId) : getOrCreateCart(userId);
+
+        boolean valid = true;
+        boolean priceDrift = false;
+        List<CartValidationResponse.LineDTO> lines = new ArrayList<>(cart.getItems().size());
+        for (CartItem item : cart.getItems()) {
+            Product product = item.getProduct();
+            Money currentPrice = Money.of(product.getPrice());
 
-        return createCartResponse(cart);
+            CartValidationResponse.LineDTO line = new CartValidationResponse.LineDTO();
+            line.setProductId(product.getId());
+            line.setProductName(product.getName());
+            line.setQuantity(item.getQuantity());
+            line.setAvailableStock(product.getStockQuantity());
+            line.setInStock(product.isAvailable() && product.getStockQuantity() >= item.getQuantity());
+            line.setCartPrice(item.getPrice().toBigDecimal());
+            line.setCurrentPrice(currentPrice.toBigDecimal());
+            line.setPriceChanged(!currentPrice.equals(item.getPrice()));
+            lines.add(line);
+
+            if (line.isPriceChanged()) {
+                priceDrift = true;
+                if (reprice) {
+                    item.setPrice(currentPrice);
+                }
+            }
+            if (!line.isInStock()) {
+                valid = false;
+            }
+        }
+
+        boolean repriced = reprice && priceDrift;
+        if (repriced) {
+            markModified(cart);
+        }
+
+        CartValidationResponse response = new CartValidationResponse();
+        response.setValid(valid && (repriced || !priceDrift));
+        response.setRepriced(repriced);
+        response.setVersion(cart.getVersion());
+        response.setTotal(cart.getTotal().toBigDecimal());
+        response.setLines(lines);
+        return response;
     }
 
+    // The cart is managed here, so mutations are flushed on commit without an explicit save/merge
     private Cart getOrCreateCart(Long userId) {
-        return cartRepository.findByUserId(userId)
+        return cartRepository.findWithItemsByUserId(userId)
                 .orElseGet(() -> {
                     Cart newCart = new Cart();
                     newCart.setUser(userRepository.getReferenceById(userId));
@@ -85,42 +184,97 @@ public class CartService {
                 });
     }
 
+    // Locks the cart row first; the fetch that follows fills in the items of the locked (managed) cart
+    private Cart getOrCreateCartForUpdate(Long userId) {
+        if (cartRepository.lockByUserId(userId).isEmpty()) {
+            return getOrCreateCart(userId);
+        }
+        return cartRepository.findWithItemsByUserId(userId)
+                .orElseThrow(() -> new RuntimeException("Cart not found"));
+    }
+
+    private void addItem(Cart cart, Product product, Integer quantity) {
+        if (product.getStockQuantity() < quantity) {
+            throw new RuntimeException("Not enough stock");
+        }
+
+        CartItem cartItem = findOrCreateCartItem(cart, product);
+        cartItem.setQuantity(cartItem.getQuantity() + quantity);
+        cartItem.setPrice(Money.of(product.getPrice()));
+    }
+
+    private void updateItem(Cart cart, Long productId, Integer quantity) {
+        CartItem cartItem = cart.findItem(productId);
+        if (cartItem == null) {
+            throw new RuntimeException("Item not in cart");
+        }
+
+        cartItem.setQuantity(quantity);
+    }
+
     private CartItem findOrCreateCartItem(Cart cart, Product product) {
-        return cart.getItems().stream()
-                .filter(item -> item.getProduct().getId().equals(product.getId()))
-                .findFirst()
-                .orElseGet(() -> {
-                    CartItem newItem = new CartItem();
-                    newItem.setCart(cart);
-                    newItem.setProduct(product);
-                    newItem.setQuantity(0);
-                    cart.getItems().add(newItem);
-                    return newItem;
-                });
+        CartItem cartItem = cart.findItem(product.getId());
+        if (cartItem == null) {
+            cartItem = new CartItem();
+            cartItem.setCart(cart);
+            cartItem.setProduct(product);
+            cartItem.setQuantity(0);
+            cart.addItem(cartItem);
+        }
+        return cartItem;
+    }
+
+    private void markModified(Cart cart) {
+        updateCartTotal(cart);
+        cart.setUpdatedAt(LocalDateTime.now());
+        cart.setVersion(cart.getVersion() + 1);
+    }
+
+    // Publish to the cache only once the new version is committed, so a rolled back
+    // mutation can never leave a response cached under a version that gets reused
+    private CartResponse cacheResponse(Long userId, CartResponse response) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cartResponseCache.put(userId, response);
+                }
+            });
+        } else {
+            cartResponseCache.put(userId, response);
+        }
+        return response;
     }
 
     private void updateCartTotal(Cart cart) {
-        cart.setTotal(cart.getItems().stream()
-                .map(item -> item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add));
+        long total = 0L;
+        for (CartItem item : cart.getItems()) {
+            total = Math.addExact(total, Math.multiplyExact(item.getPrice().getMinorUnits(), item.getQuantity()));
+        }
+        cart.setTotal(Money.ofMinor(total));
     }
 
+    // Locked so checkout sees and clears exactly the contents no concurrent mutation can change under it
     public Cart getCart(Long userId) {
-        return cartRepository.findByUserId(userId)
+        cartRepository.lockByUserId(userId)
+                .orElseThrow(() -> new RuntimeException("Cart not found"));
+        return cartRepository.findWithItemsByUserId(userId)
                 .orElseThrow(() -> new RuntimeException("Cart not found"));
     }
 
     @Transactional
     public void clearCart(Long userId) {
         Cart cart = getCart(userId);
-        cart.getItems().clear();
-        cart.setTotal(BigDecimal.ZERO);
-        cartRepository.save(cart);
+        cart.clearItems();
+        markModified(cart);
+        cartResponseCache.evict(userId);
     }
 
     private CartResponse createCartResponse(Cart cart) {
         CartResponse response = new CartResponse();
-        response.setTotal(cart.getTotal());
+        response.setCartId(cart.getId());
+        response.setTotal(cart.getTotal().toBigDecimal());
+        response.setVersion(cart.getVersion());
 
         List<CartResponse.CartItemDTO> items = cart.getItems().stream()
                 .map(item -> {
@@ -128,8 +282,8 @@ public class CartService {
                     dto.setProductId(item.getProduct().getId());
                     dto.setProductName(item.getProduct().getName());
                     dto.setQuantity(item.getQuantity());
-                    dto.setPrice(item.getPrice());
-                    dto.setSubtotal(item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+                    dto.setPrice(item.getPrice().toBigDecimal());
+                    dto.setSubtotal(item.getPrice().times(item.getQuantity()).toBigDecimal());
                     return dto;
                 })
                 .collect(Collectors.toList());
@@ -0,0 +1,178 @@
+package com.eshop.service;
+
+import com.eshop.exception.CheckoutQueueFullException;
+import com.eshop.model.dto.CheckoutStatusResponse;
+import com.eshop.model.dto.CheckoutStatusResponse.ErrorCode;
+import com.eshop.model.dto.CheckoutStatusResponse.Status;
+import com.eshop.model.dto.PaymentResponse;
+import com.eshop.model.entity.Order;
+import com.eshop.model.entity.ShippingInfo;
+import com.eshop.service.gateway.PaymentGatewayUnavailableException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Asynchronous checkout: requests are queued to a bounded order stage (stock reservation and
+// order insert, which share one transaction) and then handed to a payment stage that creates the
+// payment intent. Request threads never wait on Stripe, and a full order queue rejects new work.
+// Tickets live only in this node's memory: behind a load balancer the status endpoint needs sticky
+// sessions (or a single node), otherwise a poll landing elsewhere gets a 404. Clients that lose a ticket
+// can still find the order under my-orders and fetch its payment intent from /api/payments.
+@Service
+public class CheckoutPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutPipeline.class);
+
+    private final OrderService orderService;
+    private final PaymentService paymentService;
+    private final ThreadPoolExecutor orderStage;
+    private final ThreadPoolExecutor paymentStage;
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+
+    @Value("${app.checkout.async.ticket-ttl-ms}")
+    private long ticketTtlMs;
+
+    public CheckoutPipeline(OrderService orderService,
+                            PaymentService paymentService,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.checkout.async.order-workers}") int orderWorkers,
+                            @Value("${app.checkout.async.payment-workers}") int paymentWorkers,
+                            @Value("${app.checkout.async.queue-capacity}") int queueCapacity) {
+        this.orderService = orderService;
+        this.paymentService = paymentService;
+
+        // Java 17 has no virtual threads, so each stage is a small fixed pool of platform threads
+        this.orderStage = new ThreadPoolExecutor(orderWorkers, orderWorkers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("checkout-order-"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        // When the payment stage is saturated the order worker runs the step itself,
+        // which slows the order stage down and pushes back on new submissions
+        this.paymentStage = new ThreadPoolExecutor(paymentWorkers, paymentWorkers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("checkout-payment-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        Gauge.builder("checkout.async.queued", orderStage, executor -> executor.getQueue().size())
+                .description("Checkouts waiting for an order worker")
+                .register(meterRegistry);
+        Gauge.builder("checkout.async.payment.queued", paymentStage, executor -> executor.getQueue().size())
+                .description("Orders waiting for a payment intent")
+                .register(meterRegistry);
+    }
+
+    public CheckoutStatusResponse submit(Long userId, ShippingInfo shippingInfo) {
+        Ticket ticket = new Ticket(UUID.randomUUID().toString(), userId);
+        tickets.put(ticket.id, ticket);
+
+        try {
+            orderStage.execute(() -> placeOrder(ticket, shippingInfo));
+        } catch (RejectedExecutionException e) {
+            tickets.remove(ticket.id);
+            throw new CheckoutQueueFullException("Checkout is busy, please retry shortly");
+        }
+
+        return ticket.toResponse();
+    }
+
+    public Optional<CheckoutStatusResponse> getStatus(String ticketId, Long userId) {
+        Ticket ticket = tickets.get(ticketId);
+        if (ticket == null || !ticket.userId.equals(userId)) {
+            return Optional.empty();
+        }
+        return Optional.of(ticket.toResponse());
+    }
+
+    private void placeOrder(Ticket ticket, ShippingInfo shippingInfo) {
+        try {
+            ticket.status = Status.PLACING_ORDER;
+            Order order = orderService.checkout(ticket.userId, shippingInfo);
+            ticket.orderId = order.getId();
+            ticket.status = Status.CREATING_PAYMENT;
+
+            paymentStage.execute(() -> createPayment(ticket));
+        } catch (Exception e) {
+            fail(ticket, ErrorCode.ORDER_FAILED, e);
+        }
+    }
+
+    private void createPayment(Ticket ticket) {
+        try {
+            // Finds the intent if a retry or the recovery job got there first, instead of creating a second one
+            PaymentResponse payment = paymentService.getOrCreatePaymentIntent(ticket.orderId);
+            ticket.clientSecret = payment.getClientSecret();
+            ticket.paymentIntentId = payment.getPaymentIntentId();
+            ticket.status = Status.COMPLETED;
+            ticket.finishedAt = Instant.now();
+        } catch (PaymentGatewayUnavailableException e) {
+            fail(ticket, ErrorCode.PAYMENT_UNAVAILABLE, e);
+        } catch (Exception e) {
+            fail(ticket, ErrorCode.PAYMENT_FAILED, e);
+        }
+    }
+
+    // The exception is only logged; clients get a stable code, never internal messages
+    private void fail(Ticket ticket, ErrorCode errorCode, Exception e) {
+        logger.error("Async checkout {} failed for user {} ({})", ticket.id, ticket.userId, errorCode, e);
+        ticket.errorCode = errorCode;
+        ticket.status = Status.FAILED;
+        ticket.finishedAt = Instant.now();
+    }
+
+    @Scheduled(fixedDelayString = "${app.checkout.async.ticket-ttl-ms}")
+    public void evictFinishedTickets() {
+        Instant cutoff = Instant.now().minusMillis(ticketTtlMs);
+        tickets.values().removeIf(ticket -> ticket.finishedAt != null && ticket.finishedAt.isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        orderStage.shutdown();
+        orderStage.awaitTermination(30, TimeUnit.SECONDS);
+        paymentStage.shutdown();
+        paymentStage.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private static class Ticket {
+        private final String id;
+        private final Long userId;
+        private volatile Status status = Status.QUEUED;
+        private volatile Long orderId;
+        private volatile String clientSecret;
+        private volatile String paymentIntentId;
+        private volatile ErrorCode errorCode;
+        private volatile Instant finishedAt;
+
+        private Ticket(String id, Long userId) {
+            this.id = id;
+            this.userId = userId;
+        }
+
+        private CheckoutStatusResponse toResponse() {
+            CheckoutStatusResponse response = new CheckoutStatusResponse();
+            response.setTicketId(id);
+            response.setStatus(status);
+            response.setOrderId(orderId);
+            response.setClientSecret(clientSecret);
+            response.setPaymentIntentId(paymentIntentId);
+            response.setErrorCode(errorCode);
+            return response;
+        }
+    }
+}
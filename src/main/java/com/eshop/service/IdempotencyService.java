@@ -0,0 +1,320 @@
+package com.eshop.service;
+
+import com.eshop.exception.IdempotencyConflictException;
+import com.eshop.exception.IdempotencyKeyReuseException;
+import com.eshop.model.entity.IdempotencyRecord;
+import com.eshop.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Runs an action at most once per (scope, user, Idempotency-Key). The action is a single transaction that
+// returns the id of what it created; only that id is stored, and the response is rebuilt from it for the
+// first request and every retry alike. The id is recorded before the response is built, so a retry after
+// the response step failed resumes from the committed work without rerunning the action.
+// The whole request (action and response) holds the key: duplicates wait until it has finished, so the
+// response step never runs concurrently for one key. The claim's lease is renewed while the owner works;
+// only a key whose owner died mid-request (and stopped renewing) can be taken over once the lease passes.
+// Completed ids live in a small LRU in front of the idempotency_keys table; duplicates arriving while the
+// first request is still running on this node wait on its future instead of polling the table.
+@Service
+public class IdempotencyService {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, CompletableFuture<Claimed>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Claimed> completed;
+    private final ScheduledExecutorService leaseRenewer;
+
+    @Value("${app.idempotency.ttl-hours}")
+    private long ttlHours;
+
+    @Value("${app.idempotency.wait-timeout-ms}")
+    private long waitTimeoutMs;
+
+    @Value("${app.idempotency.lease-ms}")
+    private long leaseMs;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.idempotency.cache.max-entries}") int maxEntries) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Key bookkeeping must commit independently of whatever transaction the caller is in
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.leaseRenewer = Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("idempotency-lease-"));
+        this.completed = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Claimed> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    public <T> T execute(String scope, Long userId, String key, Object request,
+                         Supplier<Long> action, Function<Long, T> respond) {
+        if (key == null || key.isBlank()) {
+            return respond.apply(action.get());
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new RuntimeException("Idempotency-Key must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String requestHash = hash(request);
+        String cacheKey = scope + ":" + userId + ":" + key;
+        Claimed cached = completed.get(cacheKey);
+        if (cached != null && cached.expiresAt().isAfter(Instant.now())) {
+            requireSameRequest(cached.requestHash(), requestHash);
+            return respond.apply(cached.resourceId());
+        }
+
+        CompletableFuture<Claimed> future = new CompletableFuture<>();
+        CompletableFuture<Claimed> existing = inFlight.putIfAbsent(cacheKey, future);
+        if (existing != null) {
+            Claimed first = await(existing);
+            requireSameRequest(first.requestHash(), requestHash);
+            return respond.apply(first.resourceId());
+        }
+
+        Outcome<T> outcome;
+        try {
+            outcome = runOnce(scope, userId, key, requestHash, action, respond);
+            Claimed claimed = new Claimed(outcome.resourceId(), requestHash,
+                    Instant.now().plus(Duration.ofHours(ttlHours)));
+            completed.put(cacheKey, claimed);
+            future.complete(claimed);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, future);
+        }
+        return outcome.response();
+    }
+
+    private <T> Outcome<T> runOnce(String scope, Long userId, String key, String requestHash,
+                                   Supplier<Long> action, Function<Long, T> respond) {
+        String token = UUID.randomUUID().toString();
+        long deadline = System.currentTimeMillis() + waitTimeoutMs;
+        while (true) {
+            IdempotencyRecord record = claim(scope, userId, key, requestHash, token);
+            // Null when the previous holder released the key between our insert and the lookup
+            if (record != null) {
+                requireSameRequest(record.getRequestHash(), requestHash);
+                if (record.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+                    if (record.getResourceId() == null) {
+                        throw new IdempotencyConflictException("This Idempotency-Key has already been used");
+                    }
+                    return new Outcome<>(record.getResourceId(), respond.apply(record.getResourceId()));
+                }
+                if (token.equals(record.getClaimToken()) || (record.isLeaseExpired() && takeOver(record, token))) {
+                    return runClaimed(record, token, action, respond);
+                }
+            }
+
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IdempotencyConflictException("A request with this Idempotency-Key is still being processed");
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdempotencyConflictException("Interrupted while waiting for the original request");
+            }
+        }
+    }
+
+    private <T> Outcome<T> runClaimed(IdempotencyRecord record, String token,
+                                      Supplier<Long> action, Function<Long, T> respond) {
+        long renewEveryMs = Math.max(1, leaseMs / 3);
+        ScheduledFuture<?> heartbeat = leaseRenewer.scheduleAtFixedRate(
+                () -> renewLease(record.getId(), token), renewEveryMs, renewEveryMs, TimeUnit.MILLISECONDS);
+        try {
+            // Set when a previous owner ran the action but failed building the response
+            Long resourceId = record.getResourceId();
+            if (resourceId == null) {
+                try {
+                    resourceId = action.get();
+                } catch (RuntimeException e) {
+                    // The action is one transaction, so failing means it rolled back: release the key for a retry
+                    transactionTemplate.executeWithoutResult(
+                            status -> idempotencyRecordRepository.release(record.getId(), token));
+                    throw e;
+                }
+                Long created = resourceId;
+                Integer recorded = transactionTemplate.execute(status -> idempotencyRecordRepository.recordResource(
+                        record.getId(), token, created));
+                warnIfTakenOver(record, recorded);
+            }
+
+            T response;
+            try {
+                response = respond.apply(resourceId);
+            } catch (RuntimeException e) {
+                // The resource stays with the key; ending the lease lets a retry take over and rebuild the response
+                transactionTemplate.executeWithoutResult(
+                        status -> idempotencyRecordRepository.endLease(record.getId(), token));
+                throw e;
+            }
+
+            Long completedId = resourceId;
+            Integer updated = transactionTemplate.execute(status -> idempotencyRecordRepository.complete(
+                    record.getId(), token, completedId, IdempotencyRecord.Status.COMPLETED));
+            warnIfTakenOver(record, updated);
+            return new Outcome<>(resourceId, response);
+        } finally {
+            heartbeat.cancel(false);
+        }
+    }
+
+    private void renewLease(Long recordId, String token) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> idempotencyRecordRepository.renewLease(
+                    recordId, token, Instant.now().plusMillis(leaseMs), IdempotencyRecord.Status.IN_PROGRESS));
+        } catch (RuntimeException e) {
+            // A failed run would cancel the schedule; the next one retries
+            logger.warn("Could not renew the lease of idempotency key {}", recordId, e);
+        }
+    }
+
+    private void warnIfTakenOver(IdempotencyRecord record, Integer updated) {
+        if (updated == null || updated == 0) {
+            logger.warn("Idempotency key {} was taken over before request completed; lease of {} ms not renewed?",
+                    record.getId(), leaseMs);
+        }
+    }
+
+    // Returns the record holding the key: ours if the insert won (the unique constraint decides), otherwise
+    // the existing one, or null if it disappeared in between
+    private IdempotencyRecord claim(String scope, Long userId, String key, String requestHash, String token) {
+        Optional<IdempotencyRecord> existing = idempotencyRecordRepository
+                .findByScopeAndUserIdAndIdempotencyKey(scope, userId, key);
+        if (existing.isPresent()) {
+            if (!existing.get().isExpired()) {
+                return existing.get();
+            }
+            transactionTemplate.executeWithoutResult(
+                    status -> idempotencyRecordRepository.deleteById(existing.get().getId()));
+        }
+
+        try {
+            return transactionTemplate.execute(status -> {
+                Instant now = Instant.now();
+                IdempotencyRecord record = new IdempotencyRecord();
+                record.setScope(scope);
+                record.setUserId(userId);
+                record.setIdempotencyKey(key);
+                record.setRequestHash(requestHash);
+                record.setStatus(IdempotencyRecord.Status.IN_PROGRESS);
+                record.setClaimToken(token);
+                record.setLockedUntil(now.plusMillis(leaseMs));
+                record.setCreatedAt(now);
+                record.setExpiresAt(now.plus(Duration.ofHours(ttlHours)));
+                return idempotencyRecordRepository.saveAndFlush(record);
+            });
+        } catch (DataIntegrityViolationException e) {
+            return idempotencyRecordRepository.findByScopeAndUserIdAndIdempotencyKey(scope, userId, key)
+                    .orElse(null);
+        }
+    }
+
+    private boolean takeOver(IdempotencyRecord record, String token) {
+        Instant now = Instant.now();
+        Integer updated = transactionTemplate.execute(status -> idempotencyRecordRepository.takeOver(
+                record.getId(), token, now.plusMillis(leaseMs), now, IdempotencyRecord.Status.IN_PROGRESS));
+        if (updated != null && updated == 1) {
+            logger.warn("Took over idempotency key {} after its lease expired", record.getId());
+            return true;
+        }
+        return false;
+    }
+
+    // Keys created before request hashes were stored carry none and are not checked
+    private void requireSameRequest(String storedHash, String requestHash) {
+        if (storedHash != null && !storedHash.equals(requestHash)) {
+            throw new IdempotencyKeyReuseException("Idempotency-Key was already used with a different request");
+        }
+    }
+
+    private Claimed await(CompletableFuture<Claimed> future) {
+        try {
+            return future.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Original request failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is still being processed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Interrupted while waiting for the original request");
+        }
+    }
+
+    @Scheduled(cron = "${app.idempotency.purge-cron}")
+    public void purgeExpired() {
+        Integer deleted = transactionTemplate.execute(status -> idempotencyRecordRepository.deleteExpired(Instant.now()));
+        logger.info("Purged {} expired idempotency keys", deleted);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        leaseRenewer.shutdownNow();
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize idempotent request", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+
+    private record Claimed(Long resourceId, String requestHash, Instant expiresAt) {
+    }
+
+    private record Outcome<T>(Long resourceId, T response) {
+    }
+}
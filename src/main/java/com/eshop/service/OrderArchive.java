@@ -0,0 +1,131 @@
+package com.eshop.service;
+
+import com.eshop.model.dto.ArchivedOrder;
+import com.eshop.model.dto.OrderResponse;
+import com.eshop.model.entity.OrderArchiveBlock;
+import com.eshop.repository.OrderArchiveBlockRepository;
+import com.eshop.repository.OrderArchiveBlockRepository.BlockSummary;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Archived orders, stored in the shared database as one gzip block per user and archive run, so every node
+// sees the same archive. Blocks are written in the caller's transaction, the one that deletes the archived
+// rows, so an order is always either hot or archived and never both or neither.
+@Component
+public class OrderArchive {
+    private final OrderArchiveBlockRepository blockRepository;
+    private final ObjectMapper objectMapper;
+
+    public OrderArchive(OrderArchiveBlockRepository blockRepository, ObjectMapper objectMapper) {
+        this.blockRepository = blockRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    public UserSummary getSummary(Long userId) {
+        BlockSummary summary = blockRepository.summarizeByUserId(userId);
+        if (summary == null || summary.getNewestCreatedAt() == null) {
+            return null;
+        }
+        return new UserSummary(summary.getCount(), summary.getNewestCreatedAt());
+    }
+
+    public List<OrderResponse> readUserOrders(Long userId) {
+        List<OrderResponse> orders = new ArrayList<>();
+        for (OrderArchiveBlock block : blockRepository.findByUserIdOrderById(userId)) {
+            for (String line : decompress(block.getPayload())) {
+                orders.add(readOrder(line).getOrder());
+            }
+        }
+        return orders;
+    }
+
+    // Archived orders created in [from, to); blocks are read one at a time so memory stays bounded by one block
+    public void forEachOrder(LocalDateTime from, LocalDateTime to, Consumer<ArchivedOrder> consumer) {
+        for (Long blockId : blockRepository.findIdsOverlapping(from, to)) {
+            OrderArchiveBlock block = blockRepository.findById(blockId).orElse(null);
+            if (block == null) {
+                continue;
+            }
+            for (String line : decompress(block.getPayload())) {
+                ArchivedOrder archived = readOrder(line);
+                LocalDateTime createdAt = archived.getOrder().getCreatedAt();
+                if (!createdAt.isBefore(from) && createdAt.isBefore(to)) {
+                    consumer.accept(archived);
+                }
+            }
+        }
+    }
+
+    // Joins the caller's transaction, which must also delete the archived rows
+    public void append(List<ArchivedOrder> orders) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, List<ArchivedOrder>> byUser = orders.stream()
+                .collect(Collectors.groupingBy(ArchivedOrder::getUserId, LinkedHashMap::new, Collectors.toList()));
+        List<OrderArchiveBlock> blocks = new ArrayList<>(byUser.size());
+        for (Map.Entry<Long, List<ArchivedOrder>> entry : byUser.entrySet()) {
+            List<ArchivedOrder> userOrders = entry.getValue();
+            OrderArchiveBlock block = new OrderArchiveBlock();
+            block.setUserId(entry.getKey());
+            block.setOrderCount(userOrders.size());
+            block.setOldestCreatedAt(userOrders.stream().map(order -> order.getOrder().getCreatedAt())
+                    .min(Comparator.naturalOrder()).orElseThrow());
+            block.setNewestCreatedAt(userOrders.stream().map(order -> order.getOrder().getCreatedAt())
+                    .max(Comparator.naturalOrder()).orElseThrow());
+            block.setPayload(compress(userOrders));
+            block.setArchivedAt(now);
+            blocks.add(block);
+        }
+        blockRepository.saveAll(blocks);
+    }
+
+    private byte[] compress(List<ArchivedOrder> orders) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            for (ArchivedOrder order : orders) {
+                gzip.write(objectMapper.writeValueAsBytes(order));
+                gzip.write('\n');
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not compress archived orders", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private List<String> decompress(byte[] payload) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(payload)), StandardCharsets.UTF_8))) {
+            return reader.lines().filter(line -> !line.isEmpty()).toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read archived orders", e);
+        }
+    }
+
+    private ArchivedOrder readOrder(String line) {
+        try {
+            return objectMapper.readValue(line, ArchivedOrder.class);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not read archived order", e);
+        }
+    }
+
+    public record UserSummary(long count, LocalDateTime newestCreatedAt) {
+    }
+}
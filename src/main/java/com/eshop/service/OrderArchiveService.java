@@ -0,0 +1,120 @@
+package com.eshop.service;
+
+import com.eshop.model.dto.ArchivedOrder;
+import com.eshop.model.entity.Order;
+import com.eshop.model.entity.OrderStatus;
+import com.eshop.repository.OrderHistoryRepository;
+import com.eshop.repository.OrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+@ConditionalOnProperty(name = "app.order.archive.enabled", havingValue = "true", matchIfMissing = true)
+public class OrderArchiveService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderArchiveService.class);
+    private static final List<OrderStatus> ARCHIVABLE_STATUSES = List.of(OrderStatus.DELIVERED, OrderStatus.CANCELLED);
+
+    private final OrderRepository orderRepository;
+    private final OrderHistoryRepository orderHistoryRepository;
+    private final OrderHistoryService orderHistoryService;
+    private final OrderArchive orderArchive;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter archivedOrders;
+
+    @Value("${app.order.archive.age-months}")
+    private int ageMonths;
+
+    @Value("${app.order.archive.chunk-size}")
+    private int chunkSize;
+
+    @Value("${app.order.archive.max-chunks-per-run}")
+    private int maxChunksPerRun;
+
+    public OrderArchiveService(OrderRepository orderRepository,
+                               OrderHistoryRepository orderHistoryRepository,
+                               OrderHistoryService orderHistoryService,
+                               OrderArchive orderArchive,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        this.orderHistoryRepository = orderHistoryRepository;
+        this.orderHistoryService = orderHistoryService;
+        this.orderArchive = orderArchive;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.archivedOrders = Counter.builder("order.archive.orders")
+                .description("Completed orders moved to archive blocks")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.order.archive.cron}")
+    public void archiveCompletedOrders() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMonths(ageMonths);
+        long lastId = 0L;
+        int total = 0;
+
+        for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+            List<Long> orderIds = orderRepository.findArchivableIds(lastId, ARCHIVABLE_STATUSES, cutoff,
+                    PageRequest.of(0, chunkSize));
+            if (orderIds.isEmpty()) {
+                break;
+            }
+            lastId = orderIds.get(orderIds.size() - 1);
+
+            // Archive blocks are written in the same transaction that deletes the rows they replace
+            Integer archived = transactionTemplate.execute(status -> archiveChunk(orderIds, cutoff));
+            archivedOrders.increment(archived);
+            total += archived;
+        }
+
+        if (total > 0) {
+            logger.info("Archived {} completed orders created before {}", total, cutoff);
+        }
+    }
+
+    private int archiveChunk(List<Long> candidateIds, LocalDateTime cutoff) {
+        List<Long> lockedIds = orderRepository.lockArchivable(candidateIds, ARCHIVABLE_STATUSES, cutoff).stream()
+                .map(Order::getId)
+                .toList();
+        if (lockedIds.isEmpty()) {
+            return 0;
+        }
+
+        // Rendered like the read model, plus the columns the export needs that the rendered order leaves out
+        List<ArchivedOrder> archived = orderRepository.findWithItemsByIdIn(lockedIds).stream()
+                .map(this::toArchivedOrder)
+                .toList();
+        orderArchive.append(archived);
+
+        List<Long> archivedIds = archived.stream().map(order -> order.getOrder().getId()).toList();
+        orderRepository.deleteArchivableItems(archivedIds, ARCHIVABLE_STATUSES, cutoff);
+        int deleted = orderRepository.deleteArchivable(archivedIds, ARCHIVABLE_STATUSES, cutoff);
+        if (deleted != archivedIds.size()) {
+            // Cannot happen while the rows are locked; never leave an order both hot and archived
+            throw new RuntimeException("Archived " + archivedIds.size() + " orders but deleted " + deleted);
+        }
+        orderHistoryRepository.deleteByOrderIdIn(archivedIds);
+        return deleted;
+    }
+
+    private ArchivedOrder toArchivedOrder(Order order) {
+        ArchivedOrder archived = new ArchivedOrder();
+        archived.setUserId(order.getUser().getId());
+        archived.setCurrency(order.getCurrency());
+        archived.setPaymentId(order.getPaymentId());
+        archived.setPaidAt(order.getPaidAt());
+        archived.setOrder(orderHistoryService.toOrderResponse(order));
+        return archived;
+    }
+}
@@ -0,0 +1,257 @@
+package com.eshop.service;
+
+import com.eshop.model.dto.OrderResponse;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+
+// Streams orders joined with their items straight from a forward-only JDBC cursor into a gzip stream.
+// Rows never enter a persistence context and at most one order is buffered, so memory stays flat
+// no matter how large the range is. Archived orders in the range follow the live ones, one archive block
+// at a time.
+@Service
+public class OrderExportService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderExportService.class);
+
+    private static final String EXPORT_SQL =
+            "SELECT o.id, o.user_id, o.created_at, o.paid_at, o.status, o.payment_status, o.currency, " +
+            "o.total, o.payment_id, oi.product_id, p.name, oi.quantity, oi.price " +
+            "FROM orders o " +
+            "JOIN order_items oi ON oi.order_id = o.id " +
+            "JOIN products p ON p.id = oi.product_id " +
+            "WHERE o.created_at >= ? AND o.created_at < ? " +
+            "ORDER BY o.id, oi.id";
+
+    private static final String CSV_HEADER = "order_id,user_id,created_at,paid_at,status,payment_status," +
+            "currency,order_total,payment_id,product_id,product_name,quantity,unit_price,line_total,archived\n";
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final OrderArchive orderArchive;
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    public OrderExportService(DataSource dataSource,
+                              ObjectMapper objectMapper,
+                              OrderArchive orderArchive,
+                              @Value("${app.order.export.fetch-size}") int fetchSize) {
+        // Integer.MIN_VALUE makes MySQL Connector/J stream rows one at a time instead of buffering the result
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.objectMapper = objectMapper;
+        this.orderArchive = orderArchive;
+    }
+
+    // from and to are inclusive calendar days; an inverted range exports nothing
+    public void export(LocalDate from, LocalDate to, Format format, OutputStream out) throws IOException {
+        Timestamp start = Timestamp.valueOf(from.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(to.plusDays(1).atStartOfDay());
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024)) {
+            long rows = format == Format.CSV
+                    ? exportCsv(start, end, gzip)
+                    : exportNdjson(start, end, gzip);
+            logger.info("Exported {} order item rows for {} to {} as {}", rows, from, to, format);
+        } catch (UncheckedIOException e) {
+            // Usually the client went away mid-download
+            throw e.getCause();
+        }
+    }
+
+    private long exportCsv(Timestamp start, Timestamp end, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(CSV_HEADER);
+        long[] rows = {0};
+        jdbcTemplate.query(EXPORT_SQL, rs -> {
+            try {
+                BigDecimal price = rs.getBigDecimal("price");
+                int quantity = rs.getInt("quantity");
+                writer.write(String.join(",",
+                        String.valueOf(rs.getLong("id")),
+                        String.valueOf(rs.getLong("user_id")),
+                        csv(timestamp(rs.getTimestamp("created_at"))),
+                        csv(timestamp(rs.getTimestamp("paid_at"))),
+                        csv(rs.getString("status")),
+                        csv(rs.getString("payment_status")),
+                        csv(rs.getString("currency")),
+                        rs.getBigDecimal("total").toPlainString(),
+                        csv(rs.getString("payment_id")),
+                        String.valueOf(rs.getLong("product_id")),
+                        csv(rs.getString("name")),
+                        String.valueOf(quantity),
+                        price.toPlainString(),
+                        price.multiply(BigDecimal.valueOf(quantity)).toPlainString(),
+                        "false"));
+                writer.write('\n');
+                rows[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, start, end);
+
+        orderArchive.forEachOrder(start.toLocalDateTime(), end.toLocalDateTime(), archived -> {
+            OrderResponse order = archived.getOrder();
+            try {
+                for (OrderResponse.OrderItemDTO item : order.getItems()) {
+                    writer.write(String.join(",",
+                            String.valueOf(order.getId()),
+                            String.valueOf(archived.getUserId()),
+                            csv(timestamp(order.getCreatedAt())),
+                            csv(timestamp(archived.getPaidAt())),
+                            csv(String.valueOf(order.getStatus())),
+                            csv(String.valueOf(order.getPaymentStatus())),
+                            csv(archived.getCurrency()),
+                            order.getTotal().toPlainString(),
+                            csv(archived.getPaymentId()),
+                            String.valueOf(item.getProductId()),
+                            csv(item.getProductName()),
+                            String.valueOf(item.getQuantity()),
+                            item.getPrice().toPlainString(),
+                            item.getSubtotal().toPlainString(),
+                            "true"));
+                    writer.write('\n');
+                    rows[0]++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+        return rows[0];
+    }
+
+    // One JSON object per order with its items; rows arrive ordered by order id so each order is contiguous
+    private long exportNdjson(Timestamp start, Timestamp end, OutputStream out) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        json.setRootValueSeparator(null);
+        long[] rows = {0};
+        long[] currentOrder = {-1};
+        jdbcTemplate.query(EXPORT_SQL, rs -> {
+            try {
+                long orderId = rs.getLong("id");
+                if (orderId != currentOrder[0]) {
+                    if (currentOrder[0] != -1) {
+                        endOrder(json);
+                    }
+                    startOrder(json, rs);
+                    currentOrder[0] = orderId;
+                }
+                BigDecimal price = rs.getBigDecimal("price");
+                int quantity = rs.getInt("quantity");
+                json.writeStartObject();
+                json.writeNumberField("productId", rs.getLong("product_id"));
+                json.writeStringField("productName", rs.getString("name"));
+                json.writeNumberField("quantity", quantity);
+                json.writeNumberField("unitPrice", price);
+                json.writeNumberField("lineTotal", price.multiply(BigDecimal.valueOf(quantity)));
+                json.writeEndObject();
+                rows[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, start, end);
+        if (currentOrder[0] != -1) {
+            endOrder(json);
+        }
+
+        orderArchive.forEachOrder(start.toLocalDateTime(), end.toLocalDateTime(), archived -> {
+            OrderResponse order = archived.getOrder();
+            try {
+                json.writeStartObject();
+                json.writeNumberField("orderId", order.getId());
+                json.writeNumberField("userId", archived.getUserId());
+                json.writeStringField("createdAt", timestamp(order.getCreatedAt()));
+                json.writeStringField("paidAt", timestamp(archived.getPaidAt()));
+                json.writeStringField("status", String.valueOf(order.getStatus()));
+                json.writeStringField("paymentStatus", String.valueOf(order.getPaymentStatus()));
+                json.writeStringField("currency", archived.getCurrency());
+                json.writeNumberField("total", order.getTotal());
+                json.writeStringField("paymentId", archived.getPaymentId());
+                json.writeBooleanField("archived", true);
+                json.writeArrayFieldStart("items");
+                for (OrderResponse.OrderItemDTO item : order.getItems()) {
+                    json.writeStartObject();
+                    json.writeNumberField("productId", item.getProductId());
+                    json.writeStringField("productName", item.getProductName());
+                    json.writeNumberField("quantity", item.getQuantity());
+                    json.writeNumberField("unitPrice", item.getPrice());
+                    json.writeNumberField("lineTotal", item.getSubtotal());
+                    json.writeEndObject();
+                    rows[0]++;
+                }
+                endOrder(json);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        json.flush();
+        return rows[0];
+    }
+
+    private void startOrder(JsonGenerator json, ResultSet rs) throws IOException, SQLException {
+        json.writeStartObject();
+        json.writeNumberField("orderId", rs.getLong("id"));
+        json.writeNumberField("userId", rs.getLong("user_id"));
+        json.writeStringField("createdAt", timestamp(rs.getTimestamp("created_at")));
+        json.writeStringField("paidAt", timestamp(rs.getTimestamp("paid_at")));
+        json.writeStringField("status", rs.getString("status"));
+        json.writeStringField("paymentStatus", rs.getString("payment_status"));
+        json.writeStringField("currency", rs.getString("currency"));
+        json.writeNumberField("total", rs.getBigDecimal("total"));
+        json.writeStringField("paymentId", rs.getString("payment_id"));
+        json.writeBooleanField("archived", false);
+        json.writeArrayFieldStart("items");
+    }
+
+    private void endOrder(JsonGenerator json) throws IOException {
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    // Live and archived rows share one format, whatever text the driver would render for the column
+    private static String timestamp(Timestamp value) {
+        return value == null ? null : timestamp(value.toLocalDateTime());
+    }
+
+    private static String timestamp(LocalDateTime value) {
+        return value == null ? null : TIMESTAMP_FORMAT.format(value);
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+}
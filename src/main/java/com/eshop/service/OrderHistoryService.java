@@ -0,0 +1,190 @@
+package com.eshop.service;
+
+import com.eshop.model.dto.OrderResponse;
+import com.eshop.model.entity.Order;
+import com.eshop.model.entity.OrderHistory;
+import com.eshop.model.entity.OrderStatus;
+import com.eshop.repository.OrderHistoryRepository;
+import com.eshop.repository.OrderRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+@Service
+public class OrderHistoryService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderHistoryService.class);
+    private static final int BACKFILL_CHUNK_SIZE = 200;
+
+    private final OrderHistoryRepository orderHistoryRepository;
+    private final OrderRepository orderRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService backfillExecutor = Executors.newSingleThreadExecutor(
+            new CustomizableThreadFactory("order-history-backfill-"));
+
+    public OrderHistoryService(OrderHistoryRepository orderHistoryRepository,
+                               OrderRepository orderRepository,
+                               ObjectMapper objectMapper,
+                               PlatformTransactionManager transactionManager) {
+        this.orderHistoryRepository = orderHistoryRepository;
+        this.orderRepository = orderRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Served with one range scan on (user_id, created_at) plus the page count
+    @Transactional(readOnly = true)
+    public Page<OrderResponse> getUserOrders(Long userId, Pageable pageable) {
+        return orderHistoryRepository.findByUserId(userId, pageable)
+                .map(history -> readPayload(history.getPayload()));
+    }
+
+    // Renders the order and writes its read model row; called whenever an order is saved
+    @Transactional
+    public void record(Order order) {
+        orderHistoryRepository.upsert(order.getId(), order.getUser().getId(), order.getCreatedAt(),
+                order.getTotal().toBigDecimal(), order.getStatus().name(), writePayload(toOrderResponse(order)));
+    }
+
+    // Patches a new status into already rendered rows instead of re-rendering each order from its items
+    @Transactional
+    public Map<Long, OrderResponse> applyStatus(Collection<Long> orderIds, OrderStatus status) {
+        Map<Long, OrderResponse> updated = new LinkedHashMap<>();
+        for (OrderHistory history : orderHistoryRepository.findAllById(orderIds)) {
+            OrderResponse response = readPayload(history.getPayload());
+            response.setStatus(status);
+            history.setStatus(status);
+            history.setPayload(writePayload(response));
+            updated.put(history.getOrderId(), response);
+        }
+
+        // Orders the backfill has not reached yet are rendered in full
+        List<Long> missing = orderIds.stream().filter(id -> !updated.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            for (Order order : orderRepository.findWithItemsByIdIn(missing)) {
+                record(order);
+                updated.put(order.getId(), toOrderResponse(order));
+            }
+        }
+        return updated;
+    }
+
+    // Runs off the startup thread; every replica may start it, the chunk locks keep them apart
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        backfillExecutor.execute(this::backfillMissing);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdownNow();
+    }
+
+    // Renders orders created before the read model existed
+    public void backfillMissing() {
+        long lastId = 0L;
+        int recorded = 0;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Long> orderIds = orderRepository.findIdsWithoutHistory(lastId,
+                        PageRequest.of(0, BACKFILL_CHUNK_SIZE));
+                if (orderIds.isEmpty()) {
+                    break;
+                }
+                lastId = orderIds.get(orderIds.size() - 1);
+
+                // Orders finished by another node no longer qualify once locked, those it holds are skipped
+                Integer chunk = transactionTemplate.execute(status -> {
+                    List<Long> lockedIds = orderRepository.lockWithoutHistory(orderIds).stream()
+                            .map(Order::getId)
+                            .toList();
+                    if (lockedIds.isEmpty()) {
+                        return 0;
+                    }
+                    orderRepository.findWithItemsByIdIn(lockedIds).forEach(this::record);
+                    return lockedIds.size();
+                });
+                recorded += chunk;
+            }
+        } catch (RuntimeException e) {
+            // Whatever is still missing is picked up by the next startup or rendered on its next status change
+            logger.warn("Order history backfill stopped after {} orders", recorded, e);
+            return;
+        }
+
+        if (recorded > 0) {
+            logger.info("Backfilled order history for {} orders", recorded);
+        }
+    }
+
+    public OrderResponse toOrderResponse(Order order) {
+        OrderResponse response = new OrderResponse();
+        response.setId(order.getId());
+        response.setTotal(order.getTotal().toBigDecimal());
+        response.setStatus(order.getStatus());
+        response.setPaymentStatus(order.getPaymentStatus());
+        response.setCreatedAt(order.getCreatedAt());
+
+        // Map items
+        List<OrderResponse.OrderItemDTO> items = order.getItems().stream()
+                .map(item -> {
+                    OrderResponse.OrderItemDTO dto = new OrderResponse.OrderItemDTO();
+                    dto.setProductId(item.getProduct().getId());
+                    dto.setProductName(item.getProduct().getName());
+                    dto.setQuantity(item.getQuantity());
+                    dto.setPrice(item.getPrice().toBigDecimal());
+                    dto.setSubtotal(item.getPrice().times(item.getQuantity()).toBigDecimal());
+                    return dto;
+                }).collect(Collectors.toList());
+        response.setItems(items);
+
+        // Map shipping info
+        if (order.getShippingInfo() != null) {
+            OrderResponse.ShippingInfoDTO shippingDTO = new OrderResponse.ShippingInfoDTO();
+            shippingDTO.setFullName(order.getShippingInfo().getFullName());
+            shippingDTO.setAddress(order.getShippingInfo().getAddress());
+            shippingDTO.setCity(order.getShippingInfo().getCity());
+            shippingDTO.setState(order.getShippingInfo().getState());
+            shippingDTO.setZipCode(order.getShippingInfo().getZipCode());
+            response.setShippingInfo(shippingDTO);
+        }
+
+        return response;
+    }
+
+    private String writePayload(OrderResponse response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize order history", e);
+        }
+    }
+
+    private OrderResponse readPayload(String payload) {
+        try {
+            return objectMapper.readValue(payload, OrderResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not read order history", e);
+        }
+    }
+}
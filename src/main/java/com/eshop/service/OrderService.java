@@ -3,13 +3,19 @@ package com.eshop.service;
 import com.eshop.model.dto.OrderResponse;
 import com.eshop.model.entity.*;
 import com.eshop.repository.OrderRepository;
+import com.eshop.service.outbox.OutboxService;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,11 +25,19 @@ public class OrderService {
     private final OrderRepository orderRepository;
     private final CartService cartService;
     private final ProductService productService;
+    private final OrderHistoryService orderHistoryService;
+    private final OutboxService outboxService;
+    private final OrderArchive orderArchive;
 
-    public OrderService(OrderRepository orderRepository, CartService cartService, ProductService productService) {
+    public OrderService(OrderRepository orderRepository, CartService cartService, ProductService productService,
+                        OrderHistoryService orderHistoryService, OutboxService outboxService,
+                        OrderArchive orderArchive) {
         this.orderRepository = orderRepository;
         this.cartService = cartService;
         this.productService = productService;
+        this.orderHistoryService = orderHistoryService;
+        this.outboxService = outboxService;
+        this.orderArchive = orderArchive;
     }
 
     public Order getOrder(Long orderId) {
@@ -31,8 +45,17 @@ public class OrderService {
                 .orElseThrow(() -> new RuntimeException("Order not found"));
     }
 
+    // Locks the order row first, so payment status checks made on the result hold until commit
+    public Order getOrderByPaymentId(String paymentId) {
+        orderRepository.lockByPaymentId(paymentId)
+                .orElseThrow(() -> new RuntimeException("Order not found for payment " + paymentId));
+        return orderRepository.findWithItemsByPaymentId(paymentId)
+                .orElseThrow(() -> new RuntimeException("Order not found for payment " + paymentId));
+    }
+
     public void save(Order order) {
         orderRepository.save(order);
+        orderHistoryService.record(order);
     }
 
     public Order checkout(Long userId, ShippingInfo shippingInfo) {
@@ -66,6 +89,8 @@ public class OrderService {
 
         // Save the order
         order = orderRepository.save(order);
+        orderHistoryService.record(order);
+        outboxService.appendOrderEvent(order, OutboxService.ORDER_CREATED);
 
         // Clear the cart
         cartService.clearCart(userId);
@@ -74,40 +99,55 @@ public class OrderService {
     }
 
     public Page<OrderResponse> getUserOrders(Long userId, Pageable pageable) {
-        Page<Order> orderPage = orderRepository.findByUserId(userId, pageable);
-
-        return orderPage.map(order -> {
-            OrderResponse response = new OrderResponse();
-            response.setId(order.getId());
-            response.setTotal(order.getTotal());
-            response.setStatus(order.getStatus());
-            response.setPaymentStatus(order.getPaymentStatus());
-            response.setCreatedAt(order.getCreatedAt());
-
-            // Map items
-            List<OrderResponse.OrderItemDTO> items = order.getItems().stream()
-                    .map(item -> {
-                        OrderResponse.OrderItemDTO dto = new OrderResponse.OrderItemDTO();
-                        dto.setProductName(item.getProduct().getName());
-                        dto.setQuantity(item.getQuantity());
-                        dto.setPrice(item.getPrice());
-                        dto.setSubtotal(item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
-                        return dto;
-                    }).collect(Collectors.toList());
-            response.setItems(items);
-
-            // Map shipping info
-            if (order.getShippingInfo() != null) {
-                OrderResponse.ShippingInfoDTO shippingDTO = new OrderResponse.ShippingInfoDTO();
-                shippingDTO.setFullName(order.getShippingInfo().getFullName());
-                shippingDTO.setAddress(order.getShippingInfo().getAddress());
-                shippingDTO.setCity(order.getShippingInfo().getCity());
-                shippingDTO.setState(order.getShippingInfo().getState());
-                shippingDTO.setZipCode(order.getShippingInfo().getZipCode());
-                response.setShippingInfo(shippingDTO);
-            }
-
-            return response;
-        });
+        Page<OrderResponse> hot = orderHistoryService.getUserOrders(userId, pageable);
+        OrderArchive.UserSummary archived = orderArchive.getSummary(userId);
+        if (archived == null) {
+            return hot;
+        }
+
+        long total = hot.getTotalElements() + archived.count();
+
+        // A full newest-first page that is entirely newer than the archive needs no merge
+        List<OrderResponse> content = hot.getContent();
+        if (isNewestFirst(pageable.getSort()) && content.size() == pageable.getPageSize()
+                && content.get(content.size() - 1).getCreatedAt().isAfter(archived.newestCreatedAt())) {
+            return new PageImpl<>(content, pageable, total);
+        }
+
+        // Past the hot set: merge the top offset+size hot orders with the user's archived ones
+        int window = (int) pageable.getOffset() + pageable.getPageSize();
+        List<OrderResponse> merged = new ArrayList<>(orderHistoryService
+                .getUserOrders(userId, PageRequest.of(0, window, pageable.getSort())).getContent());
+        Set<Long> hotIds = merged.stream().map(OrderResponse::getId).collect(Collectors.toSet());
+        orderArchive.readUserOrders(userId).stream()
+                .filter(order -> !hotIds.contains(order.getId()))
+                .forEach(merged::add);
+        merged.sort(comparatorFor(pageable.getSort()));
+
+        int from = (int) Math.min(pageable.getOffset(), merged.size());
+        int to = Math.min(window, merged.size());
+        return new PageImpl<>(merged.subList(from, to), pageable, total);
+    }
+
+    private static boolean isNewestFirst(Sort sort) {
+        Sort.Order first = sort.stream().findFirst().orElse(null);
+        return first != null && first.getProperty().equals("createdAt") && first.isDescending();
+    }
+
+    // Mirrors the ORDER BY the read model applies for SortingUtils.ALLOWED_ORDER_FIELDS
+    private static Comparator<OrderResponse> comparatorFor(Sort sort) {
+        Comparator<OrderResponse> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<OrderResponse> field = switch (order.getProperty()) {
+                case "total" -> Comparator.comparing(OrderResponse::getTotal,
+                        Comparator.nullsFirst(Comparator.naturalOrder()));
+                case "status" -> Comparator.comparing(response -> response.getStatus() == null
+                        ? null : response.getStatus().name(), Comparator.nullsFirst(Comparator.naturalOrder()));
+                default -> Comparator.comparing(OrderResponse::getCreatedAt,
+                        Comparator.nullsFirst(Comparator.naturalOrder()));
+            };
+            comparator = comparator.thenComparing(order.isDescending() ? field.reversed() : field);
+        }
+        return comparator.thenComparing(OrderResponse::getId, Comparator.reverseOrder());
     }
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+package com.eshop.service;
+
+import com.eshop.exception.InvalidRequestException;
+import com.eshop.model.dto.BulkOrderStatusRequest;
+import com.eshop.model.dto.BulkOrderStatusResponse;
+import com.eshop.model.dto.BulkOrderStatusResponse.Outcome;
+import com.eshop.model.dto.BulkOrderStatusResponse.Result;
+import com.eshop.model.dto.OrderResponse;
+import com.eshop.model.entity.OrderStatus;
+import com.eshop.repository.OrderRepository;
+import com.eshop.service.outbox.OutboxService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class OrderStatusService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderStatusService.class);
+
+    private final OrderRepository orderRepository;
+    private final OrderHistoryService orderHistoryService;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.order.bulk-status.max-ids}")
+    private int maxIds;
+
+    @Value("${app.order.bulk-status.chunk-size}")
+    private int chunkSize;
+
+    public OrderStatusService(OrderRepository orderRepository,
+                              OrderHistoryService orderHistoryService,
+                              OutboxService outboxService,
+                              PlatformTransactionManager transactionManager) {
+        this.orderRepository = orderRepository;
+        this.orderHistoryService = orderHistoryService;
+        this.outboxService = outboxService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public BulkOrderStatusResponse bulkUpdate(BulkOrderStatusRequest request) {
+        OrderStatus target = request.getStatus();
+        if (target == null) {
+            throw new InvalidRequestException("Target status is required");
+        }
+        if (request.getOrderIds() == null || request.getOrderIds().isEmpty()) {
+            throw new InvalidRequestException("No order ids given");
+        }
+        if (request.getOrderIds().contains(null)) {
+            throw new InvalidRequestException("Order id is required");
+        }
+        List<Long> orderIds = new ArrayList<>(new LinkedHashSet<>(request.getOrderIds()));
+        if (orderIds.size() > maxIds) {
+            throw new InvalidRequestException("At most " + maxIds + " orders can be updated per request");
+        }
+
+        Map<Long, Result> results = new LinkedHashMap<>();
+        orderIds.forEach(id -> results.put(id, null));
+
+        // Each chunk commits on its own so one call never holds locks on thousands of rows
+        for (int from = 0; from < orderIds.size(); from += chunkSize) {
+            List<Long> chunk = orderIds.subList(from, Math.min(from + chunkSize, orderIds.size()));
+            Boolean applied = transactionTemplate.execute(status -> applyChunk(chunk, target, results, false, status));
+            if (!Boolean.TRUE.equals(applied)) {
+                // A row moved between the read and the update; redo the chunk with one guarded update per order
+                transactionTemplate.execute(status -> applyChunk(chunk, target, results, true, status));
+            }
+        }
+
+        BulkOrderStatusResponse response = new BulkOrderStatusResponse();
+        response.setStatus(target);
+        response.setResults(new ArrayList<>(results.values()));
+        response.setUpdated((int) results.values().stream()
+                .filter(result -> result.getOutcome() == Outcome.UPDATED)
+                .count());
+        logger.info("Bulk status update to {}: {} of {} orders updated", target, response.getUpdated(), orderIds.size());
+        return response;
+    }
+
+    // Returns false after rolling back when a grouped update missed rows, since it cannot tell which ones it changed
+    private boolean applyChunk(List<Long> orderIds, OrderStatus target, Map<Long, Result> results,
+                               boolean perOrder, TransactionStatus transaction) {
+        Map<Long, OrderStatus> current = currentStatuses(orderIds);
+
+        // Valid moves grouped by current status so each group is one guarded UPDATE
+        Map<OrderStatus, List<Long>> byFromStatus = new EnumMap<>(OrderStatus.class);
+        for (Long id : orderIds) {
+            OrderStatus status = current.get(id);
+            if (!current.containsKey(id)) {
+                results.put(id, new Result(id, Outcome.NOT_FOUND, null));
+            } else if (status == target) {
+                results.put(id, new Result(id, Outcome.UNCHANGED, status));
+            } else if (status == null || !status.canTransitionTo(target)) {
+                results.put(id, new Result(id, Outcome.INVALID_TRANSITION, status));
+            } else {
+                byFromStatus.computeIfAbsent(status, s -> new ArrayList<>()).add(id);
+            }
+        }
+
+        List<Long> updatedIds = new ArrayList<>();
+        for (Map.Entry<OrderStatus, List<Long>> group : byFromStatus.entrySet()) {
+            OrderStatus from = group.getKey();
+            List<Long> ids = group.getValue();
+            if (!perOrder) {
+                if (orderRepository.updateStatus(ids, from, target) != ids.size()) {
+                    transaction.setRollbackOnly();
+                    return false;
+                }
+                ids.forEach(id -> results.put(id, new Result(id, Outcome.UPDATED, from)));
+                updatedIds.addAll(ids);
+                continue;
+            }
+
+            // Only an update that matched its row was made by this request; a row another writer
+            // already moved, even to the same target, is reported as a conflict
+            List<Long> missed = new ArrayList<>();
+            for (Long id : ids) {
+                if (orderRepository.updateStatus(List.of(id), from, target) == 1) {
+                    results.put(id, new Result(id, Outcome.UPDATED, from));
+                    updatedIds.add(id);
+                } else {
+                    missed.add(id);
+                }
+            }
+            if (!missed.isEmpty()) {
+                Map<Long, OrderStatus> after = currentStatuses(missed);
+                missed.forEach(id -> results.put(id, after.containsKey(id)
+                        ? new Result(id, Outcome.CONFLICT, after.get(id))
+                        : new Result(id, Outcome.NOT_FOUND, null)));
+            }
+        }
+
+        if (!updatedIds.isEmpty()) {
+            Map<Long, OrderResponse> refreshed = orderHistoryService.applyStatus(updatedIds, target);
+            refreshed.forEach((id, order) ->
+                    outboxService.append("Order", id, OutboxService.ORDER_STATUS_CHANGED, order));
+        }
+        return true;
+    }
+
+    private Map<Long, OrderStatus> currentStatuses(List<Long> orderIds) {
+        Map<Long, OrderStatus> statuses = new LinkedHashMap<>();
+        orderRepository.findStatusesByIdIn(orderIds)
+                .forEach(row -> statuses.put(row.getId(), row.getStatus()));
+        return statuses;
+    }
+}
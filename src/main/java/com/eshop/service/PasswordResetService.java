@@ -6,6 +6,7 @@ import com.eshop.exception.UserNotFoundException;
 import com.eshop.model.dto.ResetPasswordRequest;
 import com.eshop.model.entity.User;
 import com.eshop.repository.UserRepository;
+import com.eshop.security.CredentialsVersionCache;
 import jakarta.mail.internet.MimeMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +27,8 @@ public class PasswordResetService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final JavaMailSender emailSender;
+    private final CredentialsVersionCache credentialsVersionCache;
+    private final RefreshTokenService refreshTokenService;
 
     @Value("${app.password-reset.token-expiration}")
     private long tokenExpirationMs;
@@ -39,10 +42,13 @@ public class PasswordResetService {
     @Value("${spring.mail.properties.mail.from.address}")
     private String senderEmail;
 
-    public PasswordResetService(UserRepository userRepository, PasswordEncoder passwordEncoder, JavaMailSender emailSender) {
+    public PasswordResetService(UserRepository userRepository, PasswordEncoder passwordEncoder, JavaMailSender emailSender,
+                                CredentialsVersionCache credentialsVersionCache, RefreshTokenService refreshTokenService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.emailSender = emailSender;
+        this.credentialsVersionCache = credentialsVersionCache;
+        this.refreshTokenService = refreshTokenService;
     }
 
     public void initiatePasswordReset(String email) {
@@ -70,6 +76,8 @@ public class PasswordResetService {
         }
     }
 
+    // The password change, the credentials version bump and the refresh token revocation commit together
+    @Transactional
     public void resetPassword(ResetPasswordRequest request) {
         // Validate token and get user
         User user = userRepository.findByResetToken(request.getToken())
@@ -85,14 +93,17 @@ public class PasswordResetService {
             throw new PasswordMismatchException("Passwords do not match");
         }
 
-        // Update password
+        // Update password and revoke access tokens issued with the old one; refresh tokens would mint new ones
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
+        user.incrementCredentialsVersion();
 
         // Clear reset token
         user.setResetToken(null);
         user.setResetTokenExpiry(null);
 
         userRepository.save(user);
+        refreshTokenService.deleteByUserId(user.getId());
+        credentialsVersionCache.credentialsChanged(user.getId(), user.getCredentialsVersion(), user.isEnabled());
     }
 
     private String generateSecureToken() {
@@ -0,0 +1,55 @@
+package com.eshop.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Client secrets of payment intents keyed by intent id, so a revisited payment page is answered without a
+// Stripe round trip. Bounded LRU with a TTL; webhooks that change the intent's status evict it, and the
+// TTL bounds how long another node can serve an entry this node's webhook already evicted.
+@Component
+public class PaymentIntentCache {
+    private final Map<String, CachedSecret> entries;
+    private final long ttlMs;
+
+    public PaymentIntentCache(@Value("${app.payment.client-secret-cache.max-entries}") int maxEntries,
+                              @Value("${app.payment.client-secret-cache.ttl-ms}") long ttlMs) {
+        this.ttlMs = ttlMs;
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSecret> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    public String getClientSecret(String paymentIntentId) {
+        CachedSecret cached = entries.get(paymentIntentId);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.expiresAt() < System.currentTimeMillis()) {
+            entries.remove(paymentIntentId);
+            return null;
+        }
+        return cached.clientSecret();
+    }
+
+    public void put(String paymentIntentId, String clientSecret) {
+        if (paymentIntentId != null && clientSecret != null) {
+            entries.put(paymentIntentId, new CachedSecret(clientSecret, System.currentTimeMillis() + ttlMs));
+        }
+    }
+
+    public void evict(String paymentIntentId) {
+        if (paymentIntentId != null) {
+            entries.remove(paymentIntentId);
+        }
+    }
+
+    private record CachedSecret(String clientSecret, long expiresAt) {
+    }
+}
@@ -0,0 +1,291 @@
+package com.eshop.service;
+
+import com.eshop.model.dto.PaymentReconciliationReport;
+import com.eshop.model.dto.PaymentReconciliationReport.Action;
+import com.eshop.model.dto.PaymentReconciliationReport.Discrepancy;
+import com.eshop.model.entity.Order;
+import com.eshop.model.entity.OrderStatus;
+import com.eshop.model.entity.PaymentStatus;
+import com.eshop.repository.OrderRepository;
+import com.eshop.repository.OrderRepository.PaymentCandidate;
+import com.eshop.service.gateway.GatewayPaymentIntent;
+import com.eshop.service.gateway.PaymentGateway;
+import com.eshop.service.gateway.PaymentGatewayUnavailableException;
+import com.eshop.service.outbox.OutboxService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Catches orders whose payment status drifted from the gateway's, e.g. after missed webhooks. PENDING or
+// PROCESSING orders whose payment is still pending after a grace period are paged by id, their intents
+// fetched in parallel at a capped request rate, and each page is repaired in one transaction: a succeeded
+// intent marks the order paid, a canceled one marks it failed, anything else is still in progress. Paid
+// orders are not checked; a refund leaves the intent succeeded, so the intent cannot tell them apart.
+// Repairs lock the orders and re-check their current status and payment status, so a webhook, an admin
+// change or another node's run that lands in between wins and the sale is never recorded twice.
+@Service
+public class PaymentReconciliationService {
+    private static final Logger logger = LoggerFactory.getLogger(PaymentReconciliationService.class);
+    private static final List<OrderStatus> STATUSES = List.of(OrderStatus.PENDING, OrderStatus.PROCESSING);
+    private static final int MAX_REPORTED_DISCREPANCIES = 1000;
+
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+    private final PaymentGateway paymentGateway;
+    private final OutboxService outboxService;
+    private final SalesRollupService salesRollupService;
+    private final PaymentIntentCache paymentIntentCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService lookupExecutor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter repairedPaid;
+    private final Counter repairedFailed;
+    private final Counter lookupFailures;
+    private volatile PaymentReconciliationReport lastReport;
+
+    @Value("${app.payment.reconciliation.page-size}")
+    private int pageSize;
+
+    @Value("${app.payment.reconciliation.requests-per-second}")
+    private double requestsPerSecond;
+
+    @Value("${app.payment.reconciliation.stale-after-minutes}")
+    private long staleAfterMinutes;
+
+    @Value("${app.payment.reconciliation.lookback-days}")
+    private long lookbackDays;
+
+    public PaymentReconciliationService(OrderRepository orderRepository, OrderService orderService,
+                                        PaymentGateway paymentGateway, OutboxService outboxService,
+                                        SalesRollupService salesRollupService, PaymentIntentCache paymentIntentCache,
+                                        PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                        @Value("${app.payment.reconciliation.parallelism}") int parallelism) {
+        this.orderRepository = orderRepository;
+        this.orderService = orderService;
+        this.paymentGateway = paymentGateway;
+        this.outboxService = outboxService;
+        this.salesRollupService = salesRollupService;
+        this.paymentIntentCache = paymentIntentCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lookupExecutor = Executors.newFixedThreadPool(parallelism,
+                new CustomizableThreadFactory("payment-reconcile-"));
+        this.repairedPaid = Counter.builder("payment.reconciliation.repaired")
+                .tag("action", "paid")
+                .register(meterRegistry);
+        this.repairedFailed = Counter.builder("payment.reconciliation.repaired")
+                .tag("action", "failed")
+                .register(meterRegistry);
+        this.lookupFailures = Counter.builder("payment.reconciliation.lookup.failures").register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.payment.reconciliation.cron}")
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    public PaymentReconciliationReport getLastReport() {
+        return lastReport;
+    }
+
+    // Returns the previous report when a run is already in progress
+    public PaymentReconciliationReport reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("Payment reconciliation already running");
+            return lastReport;
+        }
+        try {
+            PaymentReconciliationReport report = new PaymentReconciliationReport();
+            report.setStartedAt(Instant.now());
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime createdBefore = now.minusMinutes(staleAfterMinutes);
+            LocalDateTime createdAfter = now.minusDays(lookbackDays);
+            Pacer pacer = new Pacer(requestsPerSecond);
+
+            long afterId = 0L;
+            while (!report.isAborted()) {
+                List<PaymentCandidate> page = orderRepository.findPaymentReconciliationCandidates(afterId, STATUSES,
+                        PaymentStatus.PENDING, createdAfter, createdBefore, PageRequest.of(0, pageSize));
+                if (page.isEmpty()) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).getId();
+                reconcilePage(page, pacer, report);
+                if (page.size() < pageSize) {
+                    break;
+                }
+            }
+
+            report.setFinishedAt(Instant.now());
+            lastReport = report;
+            logger.info("Payment reconciliation checked {} orders: {} marked paid, {} marked failed, "
+                            + "{} lookups failed{}", report.getOrdersChecked(), report.getRepairedPaid(),
+                    report.getRepairedFailed(), report.getLookupFailures(),
+                    report.isAborted() ? " (aborted, gateway unavailable)" : "");
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void reconcilePage(List<PaymentCandidate> page, Pacer pacer, PaymentReconciliationReport report) {
+        Map<Long, Repair> repairs = new LinkedHashMap<>();
+        for (Lookup lookup : lookUp(page, pacer)) {
+            PaymentCandidate candidate = lookup.candidate();
+            report.setOrdersChecked(report.getOrdersChecked() + 1);
+            if (lookup.error() != null) {
+                if (lookup.error() instanceof PaymentGatewayUnavailableException) {
+                    report.setAborted(true);
+                }
+                report.setLookupFailures(report.getLookupFailures() + 1);
+                lookupFailures.increment();
+                addDiscrepancy(report, candidate, null, Action.LOOKUP_FAILED);
+                continue;
+            }
+
+            String gatewayStatus = lookup.intent().status();
+            if ("succeeded".equals(gatewayStatus)) {
+                repairs.put(candidate.getId(), new Repair(candidate, gatewayStatus, Action.REPAIRED_PAID));
+            } else if ("canceled".equals(gatewayStatus)) {
+                repairs.put(candidate.getId(), new Repair(candidate, gatewayStatus, Action.REPAIRED_FAILED));
+            }
+        }
+        if (!repairs.isEmpty()) {
+            applyRepairs(repairs, report);
+        }
+    }
+
+    private List<Lookup> lookUp(List<PaymentCandidate> page, Pacer pacer) {
+        List<Callable<Lookup>> tasks = new ArrayList<>(page.size());
+        for (PaymentCandidate candidate : page) {
+            tasks.add(() -> {
+                try {
+                    pacer.acquire();
+                    return new Lookup(candidate, paymentGateway.retrieveIntent(candidate.getPaymentId()), null);
+                } catch (RuntimeException e) {
+                    return new Lookup(candidate, null, e);
+                }
+            });
+        }
+
+        List<Lookup> lookups = new ArrayList<>(page.size());
+        try {
+            for (Future<Lookup> future : lookupExecutor.invokeAll(tasks)) {
+                lookups.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Payment reconciliation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Payment reconciliation lookup failed", e.getCause());
+        }
+        return lookups;
+    }
+
+    private void applyRepairs(Map<Long, Repair> repairs, PaymentReconciliationReport report) {
+        List<Repair> applied = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            orderRepository.lockByIdIn(repairs.keySet());
+            for (Order order : orderRepository.findWithItemsByIdIn(repairs.keySet())) {
+                Repair repair = repairs.get(order.getId());
+                // The order may have been settled or cancelled since the page was read
+                if (order.getPaymentStatus() != repair.candidate().getPaymentStatus()
+                        || !STATUSES.contains(order.getStatus())) {
+                    continue;
+                }
+                if (repair.action() == Action.REPAIRED_PAID) {
+                    order.setStatus(OrderStatus.PROCESSING);
+                    order.setPaymentStatus(PaymentStatus.PAID);
+                    order.setPaidAt(LocalDateTime.now());
+                    orderService.save(order);
+                    outboxService.appendOrderEvent(order, OutboxService.PAYMENT_SUCCEEDED);
+                    salesRollupService.recordSale(order);
+                } else {
+                    order.setStatus(OrderStatus.CANCELLED);
+                    order.setPaymentStatus(PaymentStatus.FAILED);
+                    orderService.save(order);
+                    outboxService.appendOrderEvent(order, OutboxService.PAYMENT_FAILED);
+                }
+                applied.add(repair);
+            }
+        });
+
+        for (Repair repair : applied) {
+            paymentIntentCache.evict(repair.candidate().getPaymentId());
+            if (repair.action() == Action.REPAIRED_PAID) {
+                report.setRepairedPaid(report.getRepairedPaid() + 1);
+                repairedPaid.increment();
+            } else {
+                report.setRepairedFailed(report.getRepairedFailed() + 1);
+                repairedFailed.increment();
+            }
+            addDiscrepancy(report, repair.candidate(), repair.gatewayStatus(), repair.action());
+            logger.warn("Reconciled order {}: payment {} was {} at the gateway, marked {}",
+                    repair.candidate().getId(), repair.candidate().getPaymentId(), repair.gatewayStatus(),
+                    repair.action());
+        }
+    }
+
+    private void addDiscrepancy(PaymentReconciliationReport report, PaymentCandidate candidate, String gatewayStatus,
+                                Action action) {
+        if (report.getDiscrepancies().size() < MAX_REPORTED_DISCREPANCIES) {
+            report.getDiscrepancies().add(new Discrepancy(candidate.getId(), candidate.getPaymentId(),
+                    candidate.getPaymentStatus(), gatewayStatus, action));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lookupExecutor.shutdownNow();
+    }
+
+    private record Lookup(PaymentCandidate candidate, GatewayPaymentIntent intent, RuntimeException error) {
+    }
+
+    private record Repair(PaymentCandidate candidate, String gatewayStatus, Action action) {
+    }
+
+    // Spaces gateway calls evenly at the configured rate across all lookup threads
+    private static final class Pacer {
+        private final long intervalNanos;
+        private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+        Pacer(double permitsPerSecond) {
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        }
+
+        void acquire() {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextSlot.getAndAccumulate(now, (next, at) -> Math.max(next, at) + intervalNanos));
+            try {
+                TimeUnit.NANOSECONDS.sleep(slot - now);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while pacing gateway calls", e);
+            }
+        }
+    }
+}
@@ -1,212 +1,366 @@
 package com.eshop.service;
 
-import com.eshop.config.WebhookConfig;
 import com.eshop.model.dto.PaymentResponse;
 import com.eshop.model.entity.*;
-import com.stripe.exception.SignatureVerificationException;
-import com.stripe.exception.StripeException;
-import com.stripe.model.Charge;
-import com.stripe.model.Event;
-import com.stripe.model.PaymentIntent;
-import com.stripe.net.Webhook;
-import com.stripe.param.PaymentIntentCreateParams;
+import com.eshop.repository.OrderRepository;
+import com.eshop.service.gateway.GatewayEvent;
+import com.eshop.service.gateway.GatewayPaymentIntent;
+import com.eshop.service.gateway.PaymentGateway;
+import com.eshop.service.gateway.PaymentGatewayException;
+import com.eshop.service.gateway.PaymentGatewayUnavailableException;
+import com.eshop.service.gateway.PaymentIntentRequest;
+import com.eshop.service.outbox.OutboxService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
+// Not @Transactional: every gateway call happens outside a transaction, with short transactions
+// before and after it, so a slow Stripe response never pins a pooled connection.
 @Service
-@Transactional
 public class PaymentService {
 
     private static final Logger logger = LoggerFactory.getLogger(PaymentService.class);
+    private static final int RECOVERY_BATCH_SIZE = 100;
+    private static final int IDEMPOTENCY_KEY_HOURS = 23;
+    // Orders a payment may still settle; anything else was cancelled or fulfilled meanwhile
+    private static final List<OrderStatus> SETTLEABLE_STATUSES = List.of(OrderStatus.PENDING, OrderStatus.PROCESSING);
 
     private final OrderService orderService;
-    private final WebhookConfig webhookConfig;
-
-    public PaymentService(OrderService orderService, WebhookConfig webhookConfig) {
+    private final OrderRepository orderRepository;
+    private final PaymentGateway paymentGateway;
+    private final OutboxService outboxService;
+    private final SalesRollupService salesRollupService;
+    private final PaymentIntentCache paymentIntentCache;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.payment.intent-recovery.stale-after-ms}")
+    private long staleAfterMs;
+
+    public PaymentService(OrderService orderService, OrderRepository orderRepository, PaymentGateway paymentGateway,
+                          OutboxService outboxService, SalesRollupService salesRollupService,
+                          PaymentIntentCache paymentIntentCache, PlatformTransactionManager transactionManager) {
         this.orderService = orderService;
-        this.webhookConfig = webhookConfig;
+        this.orderRepository = orderRepository;
+        this.paymentGateway = paymentGateway;
+        this.outboxService = outboxService;
+        this.salesRollupService = salesRollupService;
+        this.paymentIntentCache = paymentIntentCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public PaymentResponse createPaymentIntent(Long orderId, String currency, ShippingInfo shippingInfo) {
-        try {
-            logger.info("Creating payment intent for order {} with shipping info: {}", orderId, shippingInfo);
+        logger.info("Creating payment intent for order {} with shipping info: {}", orderId, shippingInfo);
+
+        // Validate shipping info
+        if (shippingInfo == null) {
+            logger.error("Shipping info is null for order {}", orderId);
+            throw new IllegalArgumentException("Shipping information is required");
+        }
 
-            // Get order
+        // Short transaction: mark the intent as pending and read everything the gateway needs
+        PaymentIntentRequest request = transactionTemplate.execute(status -> {
             Order order = orderService.getOrder(orderId);
+            order.setPaymentIntentRequestedAt(LocalDateTime.now());
+            orderService.save(order);
+            return buildIntentRequest(order, currency, shippingInfo);
+        });
 
-            // Validate shipping info
-            if (shippingInfo == null) {
-                logger.error("Shipping info is null for order {}", orderId);
-                throw new IllegalArgumentException("Shipping information is required");
+        // No transaction or pooled connection is held while the gateway responds
+        GatewayPaymentIntent paymentIntent;
+        try {
+            paymentIntent = paymentGateway.createIntent(request);
+        } catch (PaymentGatewayUnavailableException e) {
+            // Refused or abandoned locally; an earlier attempt may still be pending, so the marker stays
+            logger.warn("Payment gateway unavailable for order {}: {}", orderId, e.getMessage());
+            throw e;
+        } catch (PaymentGatewayException e) {
+            if (e.isOutcomeUnknown()) {
+                // The pending marker stays so recovery can finish with the same idempotency key
+                logger.error("Connection error creating payment intent for order: {}", orderId, e);
+            } else {
+                logger.error("Error creating payment intent for order: {}", orderId, e);
+                clearPendingIntent(orderId);
             }
+            throw new RuntimeException("Error creating payment intent", e);
+        }
 
-            // Create shipping params for Stripe
-            PaymentIntentCreateParams.Shipping shipping = PaymentIntentCreateParams.Shipping.builder()
-                    .setName(shippingInfo.getFullName())
-                    .setAddress(
-                            PaymentIntentCreateParams.Shipping.Address.builder()
-                                    .setLine1(shippingInfo.getAddress())
-                                    .setCity(shippingInfo.getCity())
-                                    .setState(shippingInfo.getState())
-                                    .setPostalCode(shippingInfo.getZipCode())
-                                    .setCountry("US")  // Make this configurable
-                                    .build()
-                    )
-                    .build();
-
-            // Create payment intent with shipping info
-            PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
-                    .setAmount(order.getTotal().multiply(new BigDecimal("100")).longValue()) // Convert to cents
-                    .setCurrency(currency.toLowerCase())
-                    .setAutomaticPaymentMethods(
-                            PaymentIntentCreateParams.AutomaticPaymentMethods.builder()
-                                    .setEnabled(true)
-                                    .build()
-                    )
-                    .putMetadata("orderId", orderId.toString())
-                    .putMetadata("orderItems", formatOrderItems(order.getItems()))
-                    .putMetadata("customerName", order.getUser().getFullName())
-                    .putMetadata("customerEmail", order.getUser().getEmail())
-                    .setShipping(shipping)  // Add shipping info to payment intent
-                    .setDescription("Order #" + orderId)  // Add order description
-                    .build();
-
-            PaymentIntent paymentIntent = PaymentIntent.create(params);
-
-            // Store the payment intent ID with the order
-            order.setPaymentId(paymentIntent.getId());
-            orderService.save(order);
+        // Store the payment intent ID with the order
+        storePaymentIntent(orderId, paymentIntent.id());
+        paymentIntentCache.put(paymentIntent.id(), paymentIntent.clientSecret());
 
-            // Create response
-            PaymentResponse response = new PaymentResponse();
-            response.setClientSecret(paymentIntent.getClientSecret());
-            response.setPaymentIntentId(paymentIntent.getId());
+        // Create response
+        PaymentResponse response = new PaymentResponse();
+        response.setClientSecret(paymentIntent.clientSecret());
+        response.setPaymentIntentId(paymentIntent.id());
 
-            return response;
-        } catch (StripeException e) {
-            logger.error("Error creating payment intent for order: {}", orderId, e);
-            throw new RuntimeException("Error creating payment intent", e);
-        }
+        return response;
     }
 
-    public void handleWebhook(String payload, String sigHeader) {
-        try {
-            // Verify webhook signature
-            Event event = Webhook.constructEvent(
-                    payload,
-                    sigHeader,
-                    webhookConfig.getWebhookSecret()
-            );
-
-            // Handle different event types
-            switch (event.getType()) {
-                case "payment_intent.succeeded":
-                    handlePaymentIntentSucceeded(event);
-                    break;
-
-                case "payment_intent.payment_failed":
-                    handlePaymentIntentFailed(event);
-                    break;
-
-                case "charge.refunded":
-                    handleChargeRefunded(event);
-                    break;
-
-                default:
-                    logger.info("Unhandled event type: {}", event.getType());
+    // The order's payment intent, created when the order has none yet or the stored one cannot be retrieved.
+    // Safe to repeat: creation uses the order's gateway idempotency key.
+    public PaymentResponse getOrCreatePaymentIntent(Long orderId) {
+        Order order = orderService.getOrder(orderId);
+
+        PaymentResponse response = null;
+        if (order.getPaymentId() != null) {
+            try {
+                response = getPaymentIntent(order.getPaymentId());
+            } catch (PaymentGatewayUnavailableException e) {
+                // Creating a new intent would be refused just the same
+                throw e;
+            } catch (PaymentGatewayException e) {
+                logger.warn("Could not retrieve payment intent {} for order {}, creating a new one",
+                        order.getPaymentId(), orderId, e);
             }
-        } catch (SignatureVerificationException e) {
-            logger.error("Invalid webhook signature", e);
-            throw new RuntimeException("Invalid webhook signature");
-        } catch (Exception e) {
-            logger.error("Error processing webhook", e);
-            throw new RuntimeException("Error processing webhook");
         }
+        if (response == null) {
+            response = createPaymentIntent(order.getId(), order.getCurrency(), order.getShippingInfo());
+        }
+
+        response.setOrderId(order.getId());
+        return response;
     }
 
-    private void handlePaymentIntentSucceeded(Event event) {
-        // Use proper casting and API methods
-        PaymentIntent paymentIntent = (PaymentIntent) event.getDataObjectDeserializer()
-                .getObject().orElseThrow(() -> new RuntimeException("Invalid event data"));
+    // Repeat visits to the payment page are answered from the cache; only a miss goes to the gateway
+    public PaymentResponse getPaymentIntent(String paymentIntentId) {
+        String clientSecret = paymentIntentCache.getClientSecret(paymentIntentId);
+        if (clientSecret == null) {
+            clientSecret = paymentGateway.retrieveIntent(paymentIntentId).clientSecret();
+            paymentIntentCache.put(paymentIntentId, clientSecret);
+        }
 
-        String orderId = paymentIntent.getMetadata().get("orderId");
+        PaymentResponse response = new PaymentResponse();
+        response.setClientSecret(clientSecret);
+        response.setPaymentIntentId(paymentIntentId);
+        return response;
+    }
 
-        try {
-            Order order = orderService.getOrder(Long.valueOf(orderId));
+    // Finishes intent creations interrupted by a crash or a lost Stripe response
+    @Scheduled(fixedDelayString = "${app.payment.intent-recovery.interval-ms}")
+    public void recoverPendingIntents() {
+        LocalDateTime staleBefore = LocalDateTime.now().minus(Duration.ofMillis(staleAfterMs));
+        List<Long> orderIds = orderRepository.findIdsWithPendingPaymentIntent(staleBefore,
+                PageRequest.of(0, RECOVERY_BATCH_SIZE));
+        for (Long orderId : orderIds) {
+            try {
+                recoverPendingIntent(orderId);
+            } catch (RuntimeException e) {
+                logger.warn("Could not recover pending payment intent for order {}", orderId, e);
+            }
+        }
+    }
 
-            // Verify this is the correct payment intent for this order
-            if (!paymentIntent.getId().equals(order.getPaymentId())) {
-                logger.error("Payment intent ID mismatch for order: {}", orderId);
+    private void recoverPendingIntent(Long orderId) {
+        PaymentIntentRequest request = transactionTemplate.execute(status -> {
+            Order order = orderService.getOrder(orderId);
+            LocalDateTime requestedAt = order.getPaymentIntentRequestedAt();
+            if (requestedAt == null) {
+                return null;
+            }
+            // Stripe forgets idempotency keys after 24 hours; a retry then could create a second intent
+            if (requestedAt.isBefore(LocalDateTime.now().minusHours(IDEMPOTENCY_KEY_HOURS))
+                    || order.getShippingInfo() == null) {
+                order.setPaymentIntentRequestedAt(null);
+                orderService.save(order);
+                return null;
+            }
+            return buildIntentRequest(order, order.getCurrency(), order.getShippingInfo());
+        });
+        if (request == null) {
+            return;
+        }
+
+        try {
+            GatewayPaymentIntent paymentIntent = paymentGateway.createIntent(request);
+            storePaymentIntent(orderId, paymentIntent.id());
+            paymentIntentCache.put(paymentIntent.id(), paymentIntent.clientSecret());
+            logger.info("Recovered payment intent {} for order {}", paymentIntent.id(), orderId);
+        } catch (PaymentGatewayException e) {
+            if (e.isOutcomeUnknown() || e instanceof PaymentGatewayUnavailableException) {
+                logger.warn("Payment gateway still unreachable for pending intent of order {}", orderId);
                 return;
             }
+            logger.error("Giving up on pending payment intent for order {}", orderId, e);
+            clearPendingIntent(orderId);
+        }
+    }
 
-            order.setStatus(OrderStatus.PROCESSING);  // Order status changes to processing
-            order.setPaymentStatus(PaymentStatus.PAID);  // Payment status changes to paid
-            order.setPaymentId(paymentIntent.getId());
-            order.setPaidAt(LocalDateTime.now());
+    private PaymentIntentRequest buildIntentRequest(Order order, String currency, ShippingInfo shippingInfo) {
+        PaymentIntentRequest request = new PaymentIntentRequest();
+        request.setOrderId(order.getId());
+        request.setAmountMinor(order.getTotal().getMinorUnits()); // Amount in cents
+        request.setCurrency(currency);
+        request.setShippingInfo(shippingInfo);
+        request.setDescription("Order #" + order.getId());  // Add order description
+        request.getMetadata().put("orderId", order.getId().toString());
+        request.getMetadata().put("orderItems", formatOrderItems(order.getItems()));
+        request.getMetadata().put("customerName", order.getUser().getFullName());
+        request.getMetadata().put("customerEmail", order.getUser().getEmail());
+        // Same key for every attempt on an order, so a retried create returns the intent already made
+        request.setIdempotencyKey("order-" + order.getId() + "-intent");
+        return request;
+    }
+
+    private void storePaymentIntent(Long orderId, String paymentIntentId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Order order = orderService.getOrder(orderId);
+            order.setPaymentId(paymentIntentId);
+            order.setPaymentIntentRequestedAt(null);
             orderService.save(order);
+        });
+    }
 
-            logger.info("Payment succeeded for order: {}", orderId);
-        } catch (Exception e) {
-            logger.error("Error processing payment success for order: {}", orderId, e);
+    private void clearPendingIntent(Long orderId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Order order = orderService.getOrder(orderId);
+            order.setPaymentIntentRequestedAt(null);
+            orderService.save(order);
+        });
+    }
+
+    public GatewayEvent verifyWebhook(String payload, String sigHeader) {
+        try {
+            // Verify webhook signature
+            return paymentGateway.verifyWebhook(payload, sigHeader);
+        } catch (PaymentGatewayException e) {
+            logger.error("Invalid webhook signature", e);
+            throw new RuntimeException("Invalid webhook signature");
         }
     }
 
-    private void handlePaymentIntentFailed(Event event) {
-        PaymentIntent paymentIntent = (PaymentIntent) event.getDataObjectDeserializer()
-                .getObject().orElseThrow(() -> new RuntimeException("Invalid event data"));
+    // For payloads stored after verifyWebhook accepted them
+    public GatewayEvent parseWebhookEvent(String payload) {
+        return paymentGateway.parseEvent(payload);
+    }
 
-        String orderId = paymentIntent.getMetadata().get("orderId");
+    // Applies a verified event; failures propagate so the webhook inbox can retry it
+    public void processWebhookEvent(GatewayEvent event) {
+        // Handle different event types
+        switch (event.type()) {
+            case "payment_intent.succeeded":
+                handlePaymentIntentSucceeded(event);
+                paymentIntentCache.evict(event.paymentIntentId());
+                break;
+
+            case "payment_intent.payment_failed":
+                handlePaymentIntentFailed(event);
+                paymentIntentCache.evict(event.paymentIntentId());
+                break;
+
+            case "charge.refunded":
+                handleChargeRefunded(event);
+                paymentIntentCache.evict(event.paymentIntentId());
+                break;
+
+            default:
+                logger.info("Unhandled event type: {}", event.type());
+        }
+    }
 
-        try {
-            Order order = orderService.getOrder(Long.valueOf(orderId));
-            order.setStatus(OrderStatus.CANCELLED);
-            order.setPaymentStatus(PaymentStatus.FAILED);
-            order.setPaymentId(paymentIntent.getId());
-            orderService.save(order);
+    private void handlePaymentIntentSucceeded(GatewayEvent event) {
+        String paymentIntentId = requirePaymentIntentId(event);
 
-            logger.warn("Payment failed for order: {}", orderId);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Order order = orderService.getOrderByPaymentId(paymentIntentId);
+
+                // Stripe may redeliver the event and reconciliation may have settled the order already;
+                // the row lock makes this check final, so the sale and event are recorded only once
+                if (order.getPaymentStatus() == PaymentStatus.PAID) {
+                    logger.info("Payment for order {} already recorded", order.getId());
+                    return;
+                }
+                // Same guard as reconciliation: an order cancelled meanwhile (e.g. by an admin) is not reopened.
+                // The customer was still charged, so the order is flagged for a refund instead of counted as a sale.
+                if (!SETTLEABLE_STATUSES.contains(order.getStatus())) {
+                    if (order.getPaymentStatus() != PaymentStatus.REFUND_PENDING
+                            && order.getPaymentStatus() != PaymentStatus.REFUNDED) {
+                        order.setPaymentStatus(PaymentStatus.REFUND_PENDING);
+                        orderService.save(order);
+                        outboxService.appendOrderEvent(order, OutboxService.PAYMENT_REFUND_REQUIRED);
+                    }
+                    logger.warn("Payment succeeded for {} order {}; flagged for refund",
+                            order.getStatus(), order.getId());
+                    return;
+                }
+
+                order.setStatus(OrderStatus.PROCESSING);  // Order status changes to processing
+                order.setPaymentStatus(PaymentStatus.PAID);  // Payment status changes to paid
+                order.setPaidAt(LocalDateTime.now());
+                orderService.save(order);
+                outboxService.appendOrderEvent(order, OutboxService.PAYMENT_SUCCEEDED);
+                salesRollupService.recordSale(order);
+
+                logger.info("Payment succeeded for order: {}", order.getId());
+            });
         } catch (Exception e) {
-            logger.error("Error processing payment failure for order: {}", orderId, e);
+            logger.error("Error processing payment success for payment intent: {}", paymentIntentId, e);
+            throw new RuntimeException("Failed to process payment success", e);
         }
     }
 
-    private void handleChargeRefunded(Event event) {
-        try {
-            Charge charge = (Charge) event.getDataObjectDeserializer()
-                    .getObject().orElseThrow(() -> new RuntimeException("Invalid event data"));
-
-            // Get the PaymentIntent ID from the charge
-            String paymentIntentId = charge.getPaymentIntent();
-
-            // Retrieve the full PaymentIntent object
-            PaymentIntent paymentIntent = PaymentIntent.retrieve(paymentIntentId);
+    private void handlePaymentIntentFailed(GatewayEvent event) {
+        String paymentIntentId = requirePaymentIntentId(event);
 
-            // Safely get the orderId from metadata, providing a default if null
-            String orderId = Optional.ofNullable(paymentIntent.getMetadata())
-                    .map(metadata -> metadata.get("orderId"))
-                    .orElseThrow(() -> new RuntimeException("Order ID not found in payment metadata"));
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Order order = orderService.getOrderByPaymentId(paymentIntentId);
+                order.setStatus(OrderStatus.CANCELLED);
+                order.setPaymentStatus(PaymentStatus.FAILED);
+                orderService.save(order);
+                outboxService.appendOrderEvent(order, OutboxService.PAYMENT_FAILED);
+
+                logger.warn("Payment failed for order: {}", order.getId());
+            });
+        } catch (Exception e) {
+            logger.error("Error processing payment failure for payment intent: {}", paymentIntentId, e);
+            throw new RuntimeException("Failed to process payment failure", e);
+        }
+    }
 
-            Order order = orderService.getOrder(Long.valueOf(orderId));
-            order.setStatus(OrderStatus.CANCELLED);
-            order.setPaymentStatus(PaymentStatus.REFUNDED);
-            orderService.save(order);
+    private void handleChargeRefunded(GatewayEvent event) {
+        // The charge names its payment intent, which is all the order lookup needs
+        String paymentIntentId = requirePaymentIntentId(event);
 
-            logger.info("Refund processed for order: {}", orderId);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Order order = orderService.getOrderByPaymentId(paymentIntentId);
+                // Only reverse sales that were counted, and only once
+                boolean countedAsSale = order.getPaymentStatus() == PaymentStatus.PAID;
+
+                order.setStatus(OrderStatus.CANCELLED);
+                order.setPaymentStatus(PaymentStatus.REFUNDED);
+                orderService.save(order);
+                outboxService.appendOrderEvent(order, OutboxService.PAYMENT_REFUNDED);
+                if (countedAsSale) {
+                    salesRollupService.recordRefund(order);
+                }
+
+                logger.info("Refund processed for order: {}", order.getId());
+            });
         } catch (Exception e) {
-            logger.error("Error processing refund", e);
+            logger.error("Error processing refund for payment intent: {}", paymentIntentId, e);
             throw new RuntimeException("Failed to process refund", e);
         }
     }
 
+    private String requirePaymentIntentId(GatewayEvent event) {
+        if (event.paymentIntentId() == null) {
+            throw new RuntimeException("Invalid event data");
+        }
+        return event.paymentIntentId();
+    }
+
     private String formatOrderItems(List<OrderItem> items) {
         return items.stream()
                 .map(item -> String.format("%dx %s", item.getQuantity(), item.getProduct().getName()))
@@ -0,0 +1,159 @@
+package com.eshop.service;
+
+import com.eshop.exception.InvalidRequestException;
+import com.eshop.model.dto.SalesAnalyticsResponse;
+import com.eshop.model.dto.TopProductsResponse;
+import com.eshop.model.entity.Money;
+import com.eshop.model.entity.Order;
+import com.eshop.model.entity.OrderItem;
+import com.eshop.model.entity.Product;
+import com.eshop.model.entity.SalesRollup;
+import com.eshop.model.entity.SalesRollup.Granularity;
+import com.eshop.repository.ProductRepository;
+import com.eshop.repository.ProductSalesRollupRepository;
+import com.eshop.repository.SalesRollupRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class SalesRollupService {
+    private static final int MAX_HOURLY_DAYS = 31;
+    private static final int MAX_DAILY_DAYS = 366;
+    private static final int MAX_TOP_PRODUCTS = 100;
+
+    private final SalesRollupRepository salesRollupRepository;
+    private final ProductSalesRollupRepository productSalesRollupRepository;
+    private final ProductRepository productRepository;
+
+    public SalesRollupService(SalesRollupRepository salesRollupRepository,
+                              ProductSalesRollupRepository productSalesRollupRepository,
+                              ProductRepository productRepository) {
+        this.salesRollupRepository = salesRollupRepository;
+        this.productSalesRollupRepository = productSalesRollupRepository;
+        this.productRepository = productRepository;
+    }
+
+    // Runs inside the webhook transaction so the rollups move together with the payment status
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordSale(Order order) {
+        LocalDateTime paidAt = order.getPaidAt() != null ? order.getPaidAt() : LocalDateTime.now();
+        long units = order.getItems().stream().mapToLong(OrderItem::getQuantity).sum();
+        long revenue = order.getTotal().getMinorUnits();
+
+        addToBuckets(paidAt, order.getCurrency(), 1, units, revenue, 0, 0);
+        for (OrderItem item : order.getItems()) {
+            productSalesRollupRepository.add(paidAt.toLocalDate(), item.getProduct().getId(), order.getCurrency(),
+                    item.getQuantity(), item.getPrice().times(item.getQuantity()).getMinorUnits(), 0, 0);
+        }
+    }
+
+    // Refunds are booked when they happen, not back-dated to the sale
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordRefund(Order order) {
+        LocalDateTime refundedAt = LocalDateTime.now();
+
+        addToBuckets(refundedAt, order.getCurrency(), 0, 0, 0, 1, order.getTotal().getMinorUnits());
+        for (OrderItem item : order.getItems()) {
+            productSalesRollupRepository.add(refundedAt.toLocalDate(), item.getProduct().getId(), order.getCurrency(),
+                    0, 0, item.getQuantity(), item.getPrice().times(item.getQuantity()).getMinorUnits());
+        }
+    }
+
+    private void addToBuckets(LocalDateTime at, String currency, long orders, long units, long revenue,
+                              long refunds, long refunded) {
+        salesRollupRepository.add(Granularity.HOUR.name(), at.truncatedTo(ChronoUnit.HOURS), currency,
+                orders, units, revenue, refunds, refunded);
+        salesRollupRepository.add(Granularity.DAY.name(), at.toLocalDate().atStartOfDay(), currency,
+                orders, units, revenue, refunds, refunded);
+    }
+
+    @Transactional(readOnly = true)
+    public SalesAnalyticsResponse getSales(Granularity granularity, LocalDate from, LocalDate to, String currency) {
+        validateRange(from, to, granularity == Granularity.HOUR ? MAX_HOURLY_DAYS : MAX_DAILY_DAYS);
+        Currency moneyCurrency = toCurrency(currency);
+
+        List<SalesRollup> rows = salesRollupRepository.findRange(granularity, currency,
+                from.atStartOfDay(), to.plusDays(1).atStartOfDay());
+
+        SalesAnalyticsResponse response = new SalesAnalyticsResponse();
+        response.setGranularity(granularity);
+        response.setCurrency(currency);
+        long netRevenue = 0;
+        for (SalesRollup row : rows) {
+            SalesAnalyticsResponse.Point point = new SalesAnalyticsResponse.Point();
+            point.setBucketStart(row.getKey().getBucketStart());
+            point.setOrders(row.getOrderCount());
+            point.setUnits(row.getUnitCount());
+            point.setRevenue(Money.ofMinor(row.getRevenueMinor(), moneyCurrency).toBigDecimal());
+            point.setRefunds(row.getRefundCount());
+            point.setRefunded(Money.ofMinor(row.getRefundedMinor(), moneyCurrency).toBigDecimal());
+            point.setNetRevenue(Money.ofMinor(row.getRevenueMinor() - row.getRefundedMinor(), moneyCurrency)
+                    .toBigDecimal());
+            response.getPoints().add(point);
+
+            response.setTotalOrders(response.getTotalOrders() + row.getOrderCount());
+            response.setTotalUnits(response.getTotalUnits() + row.getUnitCount());
+            netRevenue += row.getRevenueMinor() - row.getRefundedMinor();
+        }
+        response.setTotalRevenue(Money.ofMinor(netRevenue, moneyCurrency).toBigDecimal());
+        return response;
+    }
+
+    @Transactional(readOnly = true)
+    public TopProductsResponse getTopProducts(LocalDate from, LocalDate to, String currency, int limit) {
+        validateRange(from, to, MAX_DAILY_DAYS);
+        if (limit < 1 || limit > MAX_TOP_PRODUCTS) {
+            throw new InvalidRequestException("Limit must be between 1 and " + MAX_TOP_PRODUCTS);
+        }
+        Currency moneyCurrency = toCurrency(currency);
+
+        List<ProductSalesRollupRepository.ProductTotals> totals =
+                productSalesRollupRepository.findTopProducts(from, to, currency, PageRequest.of(0, limit));
+        Map<Long, String> names = productRepository.findAllById(totals.stream()
+                        .map(ProductSalesRollupRepository.ProductTotals::getProductId).toList())
+                .stream()
+                .collect(Collectors.toMap(Product::getId, Product::getName));
+
+        TopProductsResponse response = new TopProductsResponse();
+        response.setFrom(from);
+        response.setTo(to);
+        response.setCurrency(currency);
+        response.setProducts(totals.stream().map(total -> {
+            TopProductsResponse.ProductLine line = new TopProductsResponse.ProductLine();
+            line.setProductId(total.getProductId());
+            line.setProductName(names.get(total.getProductId()));
+            line.setUnits(total.getUnits());
+            line.setRevenue(Money.ofMinor(total.getRevenueMinor(), moneyCurrency).toBigDecimal());
+            return line;
+        }).collect(Collectors.toList()));
+        return response;
+    }
+
+    private void validateRange(LocalDate from, LocalDate to, int maxDays) {
+        if (from.isAfter(to)) {
+            throw new InvalidRequestException("'from' must not be after 'to'");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxDays) {
+            throw new InvalidRequestException("Range is limited to " + maxDays + " days");
+        }
+    }
+
+    private Currency toCurrency(String code) {
+        try {
+            return Currency.getInstance(code);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Unknown currency: " + code);
+        }
+    }
+}
@@ -19,6 +19,7 @@ public class TokenBlacklistService {
 
     public void blacklistToken(String token) {
         blacklistedTokens.add(token);
+        tokenProvider.evictVerifiedToken(token);
     }
 
     public boolean isBlacklisted(String token) {
@@ -3,6 +3,7 @@ package com.eshop.service;
 import com.eshop.exception.AuthenticationException;
 import com.eshop.model.entity.User;
 import com.eshop.repository.UserRepository;
+import com.eshop.security.CredentialsVersionCache;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -11,10 +12,15 @@ import org.springframework.transaction.annotation.Transactional;
 public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final CredentialsVersionCache credentialsVersionCache;
+    private final RefreshTokenService refreshTokenService;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                       CredentialsVersionCache credentialsVersionCache, RefreshTokenService refreshTokenService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.credentialsVersionCache = credentialsVersionCache;
+        this.refreshTokenService = refreshTokenService;
     }
 
     @Transactional
@@ -41,8 +47,11 @@ public class UserService {
             throw new AuthenticationException("New password must be different from current password");
         }
 
-        // Update password
+        // Update password and revoke access tokens issued with the old one; refresh tokens would mint new ones
         user.setPassword(passwordEncoder.encode(newPassword));
+        user.incrementCredentialsVersion();
         userRepository.save(user);
+        refreshTokenService.deleteByUserId(user.getId());
+        credentialsVersionCache.credentialsChanged(user.getId(), user.getCredentialsVersion(), user.isEnabled());
     }
 }
\ No newline at end of file
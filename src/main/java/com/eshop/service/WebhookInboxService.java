@@ -0,0 +1,242 @@
+package com.eshop.service;
+
+import com.eshop.model.entity.WebhookDeadLetter;
+import com.eshop.model.entity.WebhookInboxEvent;
+import com.eshop.repository.WebhookDeadLetterRepository;
+import com.eshop.repository.WebhookInboxRepository;
+import com.eshop.service.gateway.GatewayEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Stripe webhooks are verified, stored and acknowledged on the request thread; the actual order updates
+// run later on a fixed set of single-threaded lanes. Events for the same payment intent always hash to
+// the same lane and are only dispatched once every earlier event for that intent is finished, so they
+// apply in order. Failures are retried with exponential backoff and end up in webhook_dead_letters.
+@Service
+public class WebhookInboxService {
+    private static final Logger logger = LoggerFactory.getLogger(WebhookInboxService.class);
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final WebhookInboxRepository webhookInboxRepository;
+    private final WebhookDeadLetterRepository webhookDeadLetterRepository;
+    private final PaymentService paymentService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService[] lanes;
+    private final Counter received;
+    private final Counter duplicates;
+    private final Counter processed;
+    private final Counter retried;
+    private final Counter deadLettered;
+    private final Counter superseded;
+
+    @Value("${app.webhook.inbox.batch-size}")
+    private int batchSize;
+
+    @Value("${app.webhook.inbox.max-attempts}")
+    private int maxAttempts;
+
+    @Value("${app.webhook.inbox.backoff-base-ms}")
+    private long backoffBaseMs;
+
+    @Value("${app.webhook.inbox.backoff-max-ms}")
+    private long backoffMaxMs;
+
+    @Value("${app.webhook.inbox.lease-ms}")
+    private long leaseMs;
+
+    @Value("${app.webhook.inbox.retention-days}")
+    private int retentionDays;
+
+    public WebhookInboxService(WebhookInboxRepository webhookInboxRepository,
+                               WebhookDeadLetterRepository webhookDeadLetterRepository,
+                               PaymentService paymentService,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.webhook.inbox.workers}") int workers) {
+        this.webhookInboxRepository = webhookInboxRepository;
+        this.webhookDeadLetterRepository = webhookDeadLetterRepository;
+        this.paymentService = paymentService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lanes = new ExecutorService[workers];
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("webhook-worker-");
+        for (int i = 0; i < workers; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor(threadFactory);
+        }
+        this.received = Counter.builder("webhook.inbox.received").register(meterRegistry);
+        this.duplicates = Counter.builder("webhook.inbox.duplicates").register(meterRegistry);
+        this.processed = Counter.builder("webhook.inbox.processed").register(meterRegistry);
+        this.retried = Counter.builder("webhook.inbox.retried").register(meterRegistry);
+        this.deadLettered = Counter.builder("webhook.inbox.dead.lettered").register(meterRegistry);
+        this.superseded = Counter.builder("webhook.inbox.superseded").register(meterRegistry);
+    }
+
+    // Verifies and stores the event; returns false for a redelivery of an event we already have
+    public boolean receive(String payload, String sigHeader) {
+        GatewayEvent event = paymentService.verifyWebhook(payload, sigHeader);
+        if (webhookInboxRepository.existsByEventId(event.id())) {
+            duplicates.increment();
+            return false;
+        }
+
+        WebhookInboxEvent inboxEvent = new WebhookInboxEvent();
+        inboxEvent.setEventId(event.id());
+        inboxEvent.setEventType(event.type());
+        inboxEvent.setOrderingKey(orderingKey(event));
+        inboxEvent.setPayload(payload);
+        inboxEvent.setReceivedAt(Instant.now());
+        inboxEvent.setNextAttemptAt(inboxEvent.getReceivedAt());
+        try {
+            transactionTemplate.executeWithoutResult(status -> webhookInboxRepository.saveAndFlush(inboxEvent));
+        } catch (DataIntegrityViolationException e) {
+            // Stripe delivered the same event twice concurrently
+            duplicates.increment();
+            return false;
+        }
+        received.increment();
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${app.webhook.inbox.poll-interval-ms}")
+    public void dispatch() {
+        Instant now = Instant.now();
+        // Each row is the head of its key, so no two events of one key are dispatched together
+        List<WebhookInboxEvent> dispatchable = webhookInboxRepository.findDispatchable(now,
+                WebhookInboxEvent.Status.PENDING, PageRequest.of(0, batchSize));
+
+        for (WebhookInboxEvent event : dispatchable) {
+            String token = UUID.randomUUID().toString();
+            Instant leaseUntil = now.plusMillis(leaseMs);
+            Integer claimed = transactionTemplate.execute(status ->
+                    webhookInboxRepository.claim(event.getId(), token, leaseUntil, now,
+                            WebhookInboxEvent.Status.PENDING));
+            if (claimed == null || claimed == 0) {
+                continue;
+            }
+            lanes[Math.floorMod(event.getOrderingKey().hashCode(), lanes.length)]
+                    .execute(() -> process(event.getId(), token));
+        }
+    }
+
+    private void process(Long inboxId, String token) {
+        // The lease was taken when the event was queued; if the lane was backed up past it, a later poll may
+        // have claimed and queued the event again, and only that newer claim may run it
+        Integer renewed = transactionTemplate.execute(status ->
+                webhookInboxRepository.renewLease(inboxId, token,
+                        Instant.now().plusMillis(leaseMs), WebhookInboxEvent.Status.PENDING));
+        if (renewed == null || renewed == 0) {
+            superseded.increment();
+            return;
+        }
+        WebhookInboxEvent inboxEvent = webhookInboxRepository.findById(inboxId).orElse(null);
+        if (inboxEvent == null) {
+            return;
+        }
+
+        try {
+            paymentService.processWebhookEvent(paymentService.parseWebhookEvent(inboxEvent.getPayload()));
+            markProcessed(inboxId, token);
+            processed.increment();
+        } catch (RuntimeException e) {
+            logger.warn("Webhook event {} ({}) failed on attempt {}", inboxEvent.getEventId(),
+                    inboxEvent.getEventType(), inboxEvent.getAttempts() + 1, e);
+            recordFailure(inboxId, token, e);
+        }
+    }
+
+    private void markProcessed(Long inboxId, String token) {
+        transactionTemplate.executeWithoutResult(status -> findClaimed(inboxId, token).ifPresent(event -> {
+            event.setStatus(WebhookInboxEvent.Status.PROCESSED);
+            event.setProcessedAt(Instant.now());
+            event.setLeaseUntil(null);
+            event.setClaimToken(null);
+            event.setLastError(null);
+        }));
+    }
+
+    private void recordFailure(Long inboxId, String token, RuntimeException error) {
+        String message = truncate(String.valueOf(error.getMessage()));
+        transactionTemplate.executeWithoutResult(status -> findClaimed(inboxId, token).ifPresent(event -> {
+            event.setAttempts(event.getAttempts() + 1);
+            event.setLastError(message);
+            event.setLeaseUntil(null);
+            event.setClaimToken(null);
+
+            if (event.getAttempts() >= maxAttempts) {
+                event.setStatus(WebhookInboxEvent.Status.DEAD);
+                WebhookDeadLetter deadLetter = new WebhookDeadLetter();
+                deadLetter.setEventId(event.getEventId());
+                deadLetter.setEventType(event.getEventType());
+                deadLetter.setPayload(event.getPayload());
+                deadLetter.setAttempts(event.getAttempts());
+                deadLetter.setLastError(message);
+                deadLetter.setFailedAt(Instant.now());
+                webhookDeadLetterRepository.save(deadLetter);
+                deadLettered.increment();
+                logger.error("Webhook event {} moved to dead letters after {} attempts",
+                        event.getEventId(), event.getAttempts());
+                return;
+            }
+
+            long backoff = Math.min(backoffMaxMs, backoffBaseMs << Math.min(event.getAttempts() - 1, 20));
+            event.setNextAttemptAt(Instant.now().plusMillis(backoff));
+            retried.increment();
+        }));
+    }
+
+    // The outcome is only written by the worker that still holds the claim
+    private Optional<WebhookInboxEvent> findClaimed(Long inboxId, String token) {
+        return webhookInboxRepository.findById(inboxId)
+                .filter(event -> token.equals(event.getClaimToken()));
+    }
+
+    @Scheduled(cron = "${app.webhook.inbox.purge-cron}")
+    public void purgeFinished() {
+        // Kept well past Stripe's three-day redelivery window so late duplicates are still recognised
+        Instant cutoff = Instant.now().minus(Duration.ofDays(retentionDays));
+        Integer deleted = transactionTemplate.execute(status ->
+                webhookInboxRepository.deleteFinishedBefore(cutoff, WebhookInboxEvent.Status.PENDING));
+        logger.info("Purged {} finished webhook inbox events", deleted);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            lane.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private String orderingKey(GatewayEvent event) {
+        if (event.paymentIntentId() != null) {
+            return event.paymentIntentId();
+        }
+        // Nothing to order against
+        return event.id();
+    }
+
+    private String truncate(String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
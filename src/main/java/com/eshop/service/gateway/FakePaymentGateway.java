@@ -0,0 +1,323 @@
+package com.eshop.service.gateway;
+
+import com.eshop.config.WebhookConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// In-process stand-in for Stripe (app.payment.gateway=fake). Every call sleeps for a sampled latency and
+// fails at the configured rates. Created intents are confirmed after a delay and reported back to the app
+// as Stripe-shaped webhooks, signed with stripe.webhook-secret the same way Stripe signs them, so the
+// whole checkout and payment flow can be load-tested on one machine.
+@Component
+@Qualifier(PaymentGateway.PROVIDER)
+@ConditionalOnProperty(name = "app.payment.gateway", havingValue = "fake")
+public class FakePaymentGateway implements PaymentGateway, ApplicationListener<WebServerInitializedEvent> {
+    private static final Logger logger = LoggerFactory.getLogger(FakePaymentGateway.class);
+    private static final String WEBHOOK_PATH = "/api/payments/webhook";
+    private static final long SIGNATURE_TOLERANCE_SECONDS = 300;
+    private static final int WEBHOOK_MAX_ATTEMPTS = 5;
+
+    private final ObjectMapper objectMapper;
+    private final WebhookConfig webhookConfig;
+    private final LatencyDistribution createLatency;
+    private final LatencyDistribution retrieveLatency;
+    private final LatencyDistribution confirmDelay;
+    private final Map<String, GatewayPaymentIntent> intents = new ConcurrentHashMap<>();
+    private final Map<String, String> intentIdsByIdempotencyKey = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final HttpClient httpClient;
+    private volatile String webhookUrl;
+
+    // Share of calls that fail outright
+    @Value("${app.payment.fake.failure-rate}")
+    private double failureRate;
+
+    // Share of creates that succeed but whose response is lost, as with a read timeout
+    @Value("${app.payment.fake.timeout-rate}")
+    private double timeoutRate;
+
+    // Share of intents confirmed as payment_intent.payment_failed instead of succeeded
+    @Value("${app.payment.fake.payment-failure-rate}")
+    private double paymentFailureRate;
+
+    // Off leaves intents unconfirmed until settle() is called, e.g. from tests
+    @Value("${app.payment.fake.auto-confirm}")
+    private boolean autoConfirm;
+
+    // Off simulates missed webhooks: intents still settle, the app is just never told
+    @Value("${app.payment.fake.webhook.enabled}")
+    private boolean webhookEnabled;
+
+    public FakePaymentGateway(ObjectMapper objectMapper, WebhookConfig webhookConfig,
+                              @Value("${app.payment.fake.create-latency}") String createLatency,
+                              @Value("${app.payment.fake.retrieve-latency}") String retrieveLatency,
+                              @Value("${app.payment.fake.confirm-delay}") String confirmDelay,
+                              @Value("${app.payment.fake.webhook.url:}") String webhookUrl,
+                              @Value("${app.payment.fake.webhook.threads}") int webhookThreads) {
+        this.objectMapper = objectMapper;
+        this.webhookConfig = webhookConfig;
+        this.createLatency = LatencyDistribution.parse(createLatency);
+        this.retrieveLatency = LatencyDistribution.parse(retrieveLatency);
+        this.confirmDelay = LatencyDistribution.parse(confirmDelay);
+        this.webhookUrl = webhookUrl.isBlank() ? null : webhookUrl;
+        this.scheduler = Executors.newScheduledThreadPool(webhookThreads,
+                new CustomizableThreadFactory("fake-gateway-"));
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    // Without an explicit URL the webhooks go back to this application, once its port is known
+    @Override
+    public void onApplicationEvent(WebServerInitializedEvent event) {
+        if (webhookUrl == null && event.getApplicationContext().getServerNamespace() == null) {
+            webhookUrl = "http://localhost:" + event.getWebServer().getPort() + WEBHOOK_PATH;
+        }
+    }
+
+    @Override
+    public GatewayPaymentIntent createIntent(PaymentIntentRequest request) {
+        pause(createLatency);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < failureRate) {
+            throw new PaymentGatewayException("Simulated gateway error", null, false, true);
+        }
+
+        GatewayPaymentIntent intent;
+        if (request.getIdempotencyKey() == null) {
+            intent = newIntent(request);
+        } else {
+            String intentId = intentIdsByIdempotencyKey.computeIfAbsent(request.getIdempotencyKey(),
+                    key -> newIntent(request).id());
+            intent = intents.get(intentId);
+        }
+
+        // The intent exists; only the response is lost, so a retry with the same key recovers it
+        if (random.nextDouble() < timeoutRate) {
+            throw new PaymentGatewayException("Simulated read timeout", null, true);
+        }
+        return intent;
+    }
+
+    @Override
+    public GatewayPaymentIntent retrieveIntent(String paymentIntentId) {
+        pause(retrieveLatency);
+        if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+            throw new PaymentGatewayException("Simulated gateway error", null, false, true);
+        }
+        GatewayPaymentIntent intent = intents.get(paymentIntentId);
+        if (intent == null) {
+            throw new PaymentGatewayException("No such payment intent: " + paymentIntentId);
+        }
+        return intent;
+    }
+
+    @Override
+    public GatewayEvent verifyWebhook(String payload, String sigHeader) {
+        Long timestamp = null;
+        List<String> signatures = new ArrayList<>();
+        for (String part : String.valueOf(sigHeader).split(",")) {
+            String[] pair = part.trim().split("=", 2);
+            if (pair.length != 2) {
+                continue;
+            }
+            if (pair[0].equals("t")) {
+                try {
+                    timestamp = Long.parseLong(pair[1]);
+                } catch (NumberFormatException e) {
+                    throw new PaymentGatewayException("Invalid webhook signature");
+                }
+            } else if (pair[0].equals("v1")) {
+                signatures.add(pair[1]);
+            }
+        }
+        if (timestamp == null || signatures.isEmpty()) {
+            throw new PaymentGatewayException("Invalid webhook signature");
+        }
+        if (Math.abs(Instant.now().getEpochSecond() - timestamp) > SIGNATURE_TOLERANCE_SECONDS) {
+            throw new PaymentGatewayException("Webhook timestamp outside the tolerance zone");
+        }
+
+        byte[] expected = sign(timestamp, payload).getBytes(StandardCharsets.UTF_8);
+        boolean valid = signatures.stream()
+                .anyMatch(signature -> MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.UTF_8)));
+        if (!valid) {
+            throw new PaymentGatewayException("Invalid webhook signature");
+        }
+        return parseEvent(payload);
+    }
+
+    @Override
+    public GatewayEvent parseEvent(String payload) {
+        try {
+            JsonNode event = objectMapper.readTree(payload);
+            JsonNode object = event.path("data").path("object");
+            String paymentIntentId = switch (object.path("object").asText()) {
+                case "payment_intent" -> object.path("id").asText(null);
+                case "charge" -> object.path("payment_intent").asText(null);
+                default -> null;
+            };
+            Map<String, String> metadata = object.has("metadata")
+                    ? objectMapper.convertValue(object.get("metadata"), new TypeReference<Map<String, String>>() {})
+                    : null;
+            return new GatewayEvent(event.path("id").asText(), event.path("type").asText(), paymentIntentId, metadata);
+        } catch (JsonProcessingException e) {
+            throw new PaymentGatewayException("Invalid webhook payload", e, false);
+        }
+    }
+
+    // Moves an intent to a Stripe status such as succeeded or canceled without notifying the app
+    public GatewayPaymentIntent settle(String paymentIntentId, String status) {
+        GatewayPaymentIntent intent = intents.computeIfPresent(paymentIntentId, (id, current) ->
+                new GatewayPaymentIntent(id, current.clientSecret(), status, current.metadata()));
+        if (intent == null) {
+            throw new PaymentGatewayException("No such payment intent: " + paymentIntentId);
+        }
+        return intent;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private GatewayPaymentIntent newIntent(PaymentIntentRequest request) {
+        String id = "pi_fake_" + UUID.randomUUID().toString().replace("-", "");
+        GatewayPaymentIntent intent = new GatewayPaymentIntent(id, id + "_secret_" + UUID.randomUUID(),
+                "requires_payment_method", Collections.unmodifiableMap(new LinkedHashMap<>(request.getMetadata())));
+        intents.put(id, intent);
+        if (autoConfirm) {
+            long amountMinor = request.getAmountMinor();
+            String currency = request.getCurrency().toLowerCase();
+            scheduler.schedule(() -> confirm(id, amountMinor, currency), confirmDelay.sampleMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+        return intent;
+    }
+
+    private void confirm(String intentId, long amountMinor, String currency) {
+        boolean succeeded = ThreadLocalRandom.current().nextDouble() >= paymentFailureRate;
+        GatewayPaymentIntent intent = settle(intentId, succeeded ? "succeeded" : "requires_payment_method");
+        if (!webhookEnabled) {
+            return;
+        }
+        String type = succeeded ? "payment_intent.succeeded" : "payment_intent.payment_failed";
+        sendWebhook(eventPayload(type, intent, amountMinor, currency), 1);
+    }
+
+    private String eventPayload(String type, GatewayPaymentIntent intent, long amountMinor, String currency) {
+        ObjectNode event = objectMapper.createObjectNode();
+        event.put("id", "evt_fake_" + UUID.randomUUID().toString().replace("-", ""));
+        event.put("object", "event");
+        event.put("type", type);
+        event.put("created", Instant.now().getEpochSecond());
+        ObjectNode object = event.putObject("data").putObject("object");
+        object.put("id", intent.id());
+        object.put("object", "payment_intent");
+        object.put("amount", amountMinor);
+        object.put("currency", currency);
+        object.put("status", intent.status());
+        ObjectNode metadata = object.putObject("metadata");
+        intent.metadata().forEach(metadata::put);
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize fake webhook event", e);
+        }
+    }
+
+    // Redelivers with exponential backoff like Stripe does, but gives up after a few attempts
+    private void sendWebhook(String payload, int attempt) {
+        String url = webhookUrl;
+        if (url == null) {
+            // The web server is not up yet
+            retryWebhook(payload, attempt, "web server not started");
+            return;
+        }
+
+        long timestamp = Instant.now().getEpochSecond();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .header("Stripe-Signature", "t=" + timestamp + ",v1=" + sign(timestamp, payload))
+                .POST(HttpRequest.BodyPublishers.ofString(payload))
+                .build();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    if (error == null && response.statusCode() / 100 == 2) {
+                        return;
+                    }
+                    retryWebhook(payload, attempt,
+                            error != null ? error.toString() : "HTTP " + response.statusCode());
+                });
+    }
+
+    private void retryWebhook(String payload, int attempt, String reason) {
+        if (attempt >= WEBHOOK_MAX_ATTEMPTS || scheduler.isShutdown()) {
+            logger.warn("Dropping fake webhook after {} attempts: {}", attempt, reason);
+            return;
+        }
+        scheduler.schedule(() -> sendWebhook(payload, attempt + 1), 1L << attempt, TimeUnit.SECONDS);
+    }
+
+    private String sign(long timestamp, String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(webhookConfig.getWebhookSecret().getBytes(StandardCharsets.UTF_8),
+                    "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal((timestamp + "." + payload).getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Could not sign webhook payload", e);
+        }
+    }
+
+    private void pause(LatencyDistribution latency) {
+        long millis = latency.sampleMillis();
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayException("Interrupted while waiting for the gateway", e, true);
+        }
+    }
+}
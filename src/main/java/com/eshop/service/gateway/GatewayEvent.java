@@ -0,0 +1,7 @@
+package com.eshop.service.gateway;
+
+import java.util.Map;
+
+// paymentIntentId is the intent itself for payment_intent.* events and the charge's intent for charge.*
+public record GatewayEvent(String id, String type, String paymentIntentId, Map<String, String> metadata) {
+}
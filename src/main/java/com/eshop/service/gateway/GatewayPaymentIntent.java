@@ -0,0 +1,6 @@
+package com.eshop.service.gateway;
+
+import java.util.Map;
+
+public record GatewayPaymentIntent(String id, String clientSecret, String status, Map<String, String> metadata) {
+}
@@ -0,0 +1,140 @@
+package com.eshop.service.gateway;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.net.HttpContent;
+import com.stripe.net.HttpHeaders;
+import com.stripe.net.StripeRequest;
+import com.stripe.net.StripeResponse;
+import com.stripe.net.StripeResponseStream;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// Stripe SDK transport on java.net.http instead of HttpURLConnection. One shared client negotiates HTTP/2,
+// so concurrent checkouts multiplex over a single warm TLS connection instead of opening (and handshaking)
+// new ones once HttpURLConnection's small keep-alive cache is full. The SDK still owns retries; this class
+// only sends a request and times it.
+public class JdkHttpStripeClient extends com.stripe.net.HttpClient {
+    private static final Logger logger = LoggerFactory.getLogger(JdkHttpStripeClient.class);
+    // java.net.http sets these itself and rejects them from callers
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host",
+            "upgrade");
+    // Object ids such as pi_3Nx... are dropped from the endpoint tag; resource names have no digits or capitals
+    private static final Pattern OBJECT_ID = Pattern.compile("[a-z]+_[A-Za-z0-9_]*[A-Z0-9][A-Za-z0-9_]*");
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final MeterRegistry meterRegistry;
+
+    public JdkHttpStripeClient(HttpClient client, Duration requestTimeout, MeterRegistry meterRegistry) {
+        this.client = client;
+        this.requestTimeout = requestTimeout;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public StripeResponse request(StripeRequest request) throws ApiConnectionException {
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        return new StripeResponse(response.statusCode(), HttpHeaders.of(response.headers().map()), response.body());
+    }
+
+    @Override
+    public StripeResponseStream requestStream(StripeRequest request) throws ApiConnectionException {
+        HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+        return new StripeResponseStream(response.statusCode(), HttpHeaders.of(response.headers().map()),
+                response.body());
+    }
+
+    // Opens the TLS connection ahead of the first checkout; the response itself does not matter
+    public void warmUp(String apiBase) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(apiBase + "/v1"))
+                .timeout(requestTimeout)
+                .GET()
+                .build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        logger.warn("Could not pre-connect to {}: {}", apiBase, error.toString());
+                    } else {
+                        logger.info("Pre-connected to {} over {}", apiBase, response.version());
+                    }
+                });
+    }
+
+    private <T> HttpResponse<T> send(StripeRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws ApiConnectionException {
+        String method = request.method().name();
+        String endpoint = endpoint(request.url());
+        HttpRequest httpRequest = toHttpRequest(request);
+
+        long start = System.nanoTime();
+        try {
+            HttpResponse<T> response = client.send(httpRequest, bodyHandler);
+            record(method, endpoint, String.valueOf(response.statusCode()), response.version().name(), start);
+            return response;
+        } catch (IOException e) {
+            record(method, endpoint, "IO_ERROR", "NONE", start);
+            throw new ApiConnectionException(String.format(
+                    "IOException during API request to Stripe (%s): %s", endpoint, e.getMessage()), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiConnectionException("Interrupted during API request to Stripe (" + endpoint + ")", e);
+        }
+    }
+
+    private HttpRequest toHttpRequest(StripeRequest request) throws ApiConnectionException {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(request.url().toURI()).timeout(requestTimeout);
+        } catch (URISyntaxException e) {
+            throw new ApiConnectionException("Invalid Stripe request URL: " + request.url(), e);
+        }
+
+        request.headers().map().forEach((name, values) -> {
+            if (!RESTRICTED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                values.forEach(value -> builder.header(name, value));
+            }
+        });
+
+        HttpContent content = request.content();
+        if (content == null) {
+            return builder.method(request.method().name(), HttpRequest.BodyPublishers.noBody()).build();
+        }
+        if (request.headers().firstValue("Content-Type").isEmpty()) {
+            builder.header("Content-Type", content.contentType());
+        }
+        return builder.method(request.method().name(),
+                HttpRequest.BodyPublishers.ofByteArray(content.byteArrayContent())).build();
+    }
+
+    private String endpoint(URL url) {
+        return OBJECT_ID.matcher(url.getPath()).replaceAll("{id}");
+    }
+
+    private void record(String method, String endpoint, String status, String version, long startNanos) {
+        Timer.builder("stripe.http.requests")
+                .tag("method", method)
+                .tag("endpoint", endpoint)
+                .tag("status", status)
+                .tag("version", version)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,49 @@
+package com.eshop.service.gateway;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Simulated response times, configured as "fixed:50", "uniform:20-200" or "lognormal:80,600"
+// (median and p99 in milliseconds)
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    // z-score of the 99th percentile of the standard normal distribution
+    double P99_Z = 2.326;
+
+    long sampleMillis();
+
+    static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().split(":", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid latency distribution: " + spec);
+        }
+        String args = parts[1].trim();
+        switch (parts[0].trim().toLowerCase()) {
+            case "fixed": {
+                long millis = Long.parseLong(args);
+                return () -> millis;
+            }
+            case "uniform": {
+                String[] bounds = args.split("-");
+                long min = Long.parseLong(bounds[0].trim());
+                long max = Long.parseLong(bounds[1].trim());
+                if (max < min) {
+                    throw new IllegalArgumentException("Invalid latency distribution: " + spec);
+                }
+                return () -> ThreadLocalRandom.current().nextLong(min, max + 1);
+            }
+            case "lognormal": {
+                String[] values = args.split(",");
+                double median = Double.parseDouble(values[0].trim());
+                double p99 = Double.parseDouble(values[1].trim());
+                if (median <= 0 || p99 < median) {
+                    throw new IllegalArgumentException("Invalid latency distribution: " + spec);
+                }
+                double sigma = Math.log(p99 / median) / P99_Z;
+                return () -> Math.round(median * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+            }
+            default:
+                throw new IllegalArgumentException("Invalid latency distribution: " + spec);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.eshop.service.gateway;
+
+// Everything the shop needs from a payment provider. StripePaymentGateway talks to Stripe;
+// FakePaymentGateway answers in-process so checkout can be load-tested offline.
+public interface PaymentGateway {
+
+    // Qualifies the provider implementation; everything else gets the @Primary ResilientPaymentGateway
+    String PROVIDER = "paymentProvider";
+
+    GatewayPaymentIntent createIntent(PaymentIntentRequest request);
+
+    GatewayPaymentIntent retrieveIntent(String paymentIntentId);
+
+    // Checks the signature header and returns the parsed event
+    GatewayEvent verifyWebhook(String payload, String sigHeader);
+
+    // Parses a payload whose signature was already verified
+    GatewayEvent parseEvent(String payload);
+}
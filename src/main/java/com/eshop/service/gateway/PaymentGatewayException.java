@@ -0,0 +1,26 @@
+package com.eshop.service.gateway;
+
+import lombok.Getter;
+
+@Getter
+public class PaymentGatewayException extends RuntimeException {
+    // True when the request may have reached the provider, e.g. the connection dropped before the response
+    private final boolean outcomeUnknown;
+    // True when the provider itself is failing (network, 5xx, rate limiting) rather than rejecting the request;
+    // only these failures count towards opening the circuit breaker
+    private final boolean providerFailure;
+
+    public PaymentGatewayException(String message) {
+        this(message, null, false, false);
+    }
+
+    public PaymentGatewayException(String message, Throwable cause, boolean outcomeUnknown) {
+        this(message, cause, outcomeUnknown, outcomeUnknown);
+    }
+
+    public PaymentGatewayException(String message, Throwable cause, boolean outcomeUnknown, boolean providerFailure) {
+        super(message, cause);
+        this.outcomeUnknown = outcomeUnknown;
+        this.providerFailure = providerFailure;
+    }
+}
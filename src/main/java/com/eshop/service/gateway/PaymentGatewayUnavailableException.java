@@ -0,0 +1,8 @@
+package com.eshop.service.gateway;
+
+// The call was refused locally (circuit open, bulkhead full) or abandoned at its deadline; answered with 503
+public class PaymentGatewayUnavailableException extends PaymentGatewayException {
+    public PaymentGatewayUnavailableException(String message, boolean outcomeUnknown) {
+        super(message, null, outcomeUnknown, false);
+    }
+}
@@ -0,0 +1,21 @@
+package com.eshop.service.gateway;
+
+import com.eshop.model.entity.ShippingInfo;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+public class PaymentIntentRequest {
+    private Long orderId;
+    private long amountMinor;
+    private String currency;
+    private String description;
+    private ShippingInfo shippingInfo;
+    private Map<String, String> metadata = new LinkedHashMap<>();
+    // Repeating a request with the same key returns the intent created the first time
+    private String idempotencyKey;
+}
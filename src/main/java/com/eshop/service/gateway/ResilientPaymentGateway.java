@@ -0,0 +1,204 @@
+package com.eshop.service.gateway;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Wraps the configured provider so a degraded provider cannot take the request threads down with it.
+// Network calls run on a dedicated pool behind a semaphore bulkhead; callers wait at most a short time
+// for a slot and at most the per-call deadline for the answer. A circuit breaker fed by provider
+// failures and timeouts turns calls away while the provider is unhealthy, and both refusals surface as
+// PaymentGatewayUnavailableException (503). Webhook verification is local and is passed straight through.
+@Primary
+@Component
+public class ResilientPaymentGateway implements PaymentGateway {
+    private static final Logger logger = LoggerFactory.getLogger(ResilientPaymentGateway.class);
+
+    private final PaymentGateway delegate;
+    private final MeterRegistry meterRegistry;
+    private final CircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+    private final ThreadPoolExecutor executor;
+    private final Counter bulkheadRejections;
+    private final Counter circuitRejections;
+
+    @Value("${app.payment.resilience.bulkhead.max-wait-ms}")
+    private long maxWaitMs;
+
+    @Value("${app.payment.resilience.create-timeout-ms}")
+    private long createTimeoutMs;
+
+    @Value("${app.payment.resilience.retrieve-timeout-ms}")
+    private long retrieveTimeoutMs;
+
+    public ResilientPaymentGateway(@Qualifier(PaymentGateway.PROVIDER) PaymentGateway delegate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.payment.resilience.bulkhead.max-concurrent-calls}") int maxConcurrentCalls,
+                                   @Value("${app.payment.resilience.circuit.window-size}") int windowSize,
+                                   @Value("${app.payment.resilience.circuit.minimum-calls}") int minimumCalls,
+                                   @Value("${app.payment.resilience.circuit.failure-rate-threshold}") double failureRateThreshold,
+                                   @Value("${app.payment.resilience.circuit.open-ms}") long openMs,
+                                   @Value("${app.payment.resilience.circuit.half-open-probes}") int halfOpenProbes) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.circuitBreaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold, openMs, halfOpenProbes);
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        // The semaphore bounds the work, so the queue only ever holds tasks racing a thread that is finishing
+        this.executor = new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("payment-gateway-"));
+
+        this.bulkheadRejections = Counter.builder("payment.gateway.rejected")
+                .tag("reason", "bulkhead")
+                .register(meterRegistry);
+        this.circuitRejections = Counter.builder("payment.gateway.rejected")
+                .tag("reason", "circuit_open")
+                .register(meterRegistry);
+        Gauge.builder("payment.gateway.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
+        Gauge.builder("payment.gateway.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public GatewayPaymentIntent createIntent(PaymentIntentRequest request) {
+        return call("create", createTimeoutMs, true, () -> delegate.createIntent(request));
+    }
+
+    @Override
+    public GatewayPaymentIntent retrieveIntent(String paymentIntentId) {
+        return call("retrieve", retrieveTimeoutMs, false, () -> delegate.retrieveIntent(paymentIntentId));
+    }
+
+    @Override
+    public GatewayEvent verifyWebhook(String payload, String sigHeader) {
+        return delegate.verifyWebhook(payload, sigHeader);
+    }
+
+    @Override
+    public GatewayEvent parseEvent(String payload) {
+        return delegate.parseEvent(payload);
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T call(String operation, long timeoutMs, boolean mutating, Supplier<T> call) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            circuitRejections.increment();
+            throw new PaymentGatewayUnavailableException("Payment provider is temporarily unavailable", false);
+        }
+        acquireSlot();
+
+        long start = System.nanoTime();
+        Future<T> future;
+        try {
+            // The slot is held until the call really ends, so calls abandoned at their deadline still count
+            future = executor.submit(() -> {
+                try {
+                    return call.get();
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            circuitBreaker.release();
+            throw new PaymentGatewayUnavailableException("Payment gateway is shutting down", false);
+        }
+
+        try {
+            T result = future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            circuitBreaker.onSuccess();
+            record(operation, "success", start);
+            return result;
+        } catch (TimeoutException e) {
+            // Not cancelled: Stripe's blocking socket ignores interrupts, so the call runs on until the
+            // HTTP client's own read timeout (stripe.read-timeout-ms) and only then frees its slot
+            onProviderFailure();
+            record(operation, "timeout", start);
+            throw new PaymentGatewayUnavailableException(
+                    "Payment provider did not answer within " + timeoutMs + " ms", mutating);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof PaymentGatewayException gatewayException) {
+                if (gatewayException.isProviderFailure()) {
+                    onProviderFailure();
+                    record(operation, "provider_error", start);
+                } else {
+                    // The provider answered; the request itself was refused
+                    circuitBreaker.onSuccess();
+                    record(operation, "client_error", start);
+                }
+                throw gatewayException;
+            }
+            onProviderFailure();
+            record(operation, "provider_error", start);
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new PaymentGatewayException("Payment gateway call failed", cause, mutating, true);
+        } catch (InterruptedException e) {
+            circuitBreaker.release();
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayException("Interrupted while waiting for the payment provider", e, mutating);
+        }
+    }
+
+    private void acquireSlot() {
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            circuitBreaker.release();
+            bulkheadRejections.increment();
+            throw new PaymentGatewayUnavailableException("Too many payment provider calls in flight", false);
+        }
+    }
+
+    private void onProviderFailure() {
+        CircuitBreaker.State before = circuitBreaker.getState();
+        circuitBreaker.onFailure();
+        if (before != CircuitBreaker.State.OPEN && circuitBreaker.getState() == CircuitBreaker.State.OPEN) {
+            logger.warn("Payment provider circuit opened (was {})", before);
+        }
+    }
+
+    private void record(String operation, String outcome, long startNanos) {
+        Timer.builder("payment.gateway.calls")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+}
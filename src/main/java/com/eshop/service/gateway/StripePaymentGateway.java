@@ -0,0 +1,119 @@
+package com.eshop.service.gateway;
+
+import com.eshop.config.WebhookConfig;
+import com.eshop.model.entity.ShippingInfo;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Charge;
+import com.stripe.model.Event;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.StripeObject;
+import com.stripe.net.ApiResource;
+import com.stripe.net.RequestOptions;
+import com.stripe.net.Webhook;
+import com.stripe.param.PaymentIntentCreateParams;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@Qualifier(PaymentGateway.PROVIDER)
+@ConditionalOnProperty(name = "app.payment.gateway", havingValue = "stripe", matchIfMissing = true)
+public class StripePaymentGateway implements PaymentGateway {
+    private final WebhookConfig webhookConfig;
+
+    public StripePaymentGateway(WebhookConfig webhookConfig) {
+        this.webhookConfig = webhookConfig;
+    }
+
+    @Override
+    public GatewayPaymentIntent createIntent(PaymentIntentRequest request) {
+        RequestOptions options = RequestOptions.builder()
+                .setIdempotencyKey(request.getIdempotencyKey())
+                .build();
+        try {
+            return toIntent(PaymentIntent.create(buildParams(request), options));
+        } catch (ApiConnectionException e) {
+            throw new PaymentGatewayException("Error creating payment intent", e, true);
+        } catch (StripeException e) {
+            throw new PaymentGatewayException("Error creating payment intent", e, false, isProviderFailure(e));
+        }
+    }
+
+    @Override
+    public GatewayPaymentIntent retrieveIntent(String paymentIntentId) {
+        try {
+            return toIntent(PaymentIntent.retrieve(paymentIntentId));
+        } catch (StripeException e) {
+            boolean connectionError = e instanceof ApiConnectionException;
+            throw new PaymentGatewayException("Error retrieving payment intent", e, connectionError,
+                    connectionError || isProviderFailure(e));
+        }
+    }
+
+    @Override
+    public GatewayEvent verifyWebhook(String payload, String sigHeader) {
+        try {
+            return toEvent(Webhook.constructEvent(payload, sigHeader, webhookConfig.getWebhookSecret()));
+        } catch (SignatureVerificationException e) {
+            throw new PaymentGatewayException("Invalid webhook signature", e, false);
+        }
+    }
+
+    @Override
+    public GatewayEvent parseEvent(String payload) {
+        return toEvent(ApiResource.GSON.fromJson(payload, Event.class));
+    }
+
+    private PaymentIntentCreateParams buildParams(PaymentIntentRequest request) {
+        ShippingInfo shippingInfo = request.getShippingInfo();
+        // Create shipping params for Stripe
+        PaymentIntentCreateParams.Shipping shipping = PaymentIntentCreateParams.Shipping.builder()
+                .setName(shippingInfo.getFullName())
+                .setAddress(
+                        PaymentIntentCreateParams.Shipping.Address.builder()
+                                .setLine1(shippingInfo.getAddress())
+                                .setCity(shippingInfo.getCity())
+                                .setState(shippingInfo.getState())
+                                .setPostalCode(shippingInfo.getZipCode())
+                                .setCountry("US")  // Make this configurable
+                                .build()
+                )
+                .build();
+
+        PaymentIntentCreateParams.Builder builder = PaymentIntentCreateParams.builder()
+                .setAmount(request.getAmountMinor()) // Amount in cents
+                .setCurrency(request.getCurrency().toLowerCase())
+                .setAutomaticPaymentMethods(
+                        PaymentIntentCreateParams.AutomaticPaymentMethods.builder()
+                                .setEnabled(true)
+                                .build()
+                )
+                .setShipping(shipping)
+                .setDescription(request.getDescription());
+        request.getMetadata().forEach(builder::putMetadata);
+        return builder.build();
+    }
+
+    private boolean isProviderFailure(StripeException e) {
+        Integer statusCode = e.getStatusCode();
+        return statusCode != null && (statusCode >= 500 || statusCode == 429);
+    }
+
+    private GatewayPaymentIntent toIntent(PaymentIntent paymentIntent) {
+        return new GatewayPaymentIntent(paymentIntent.getId(), paymentIntent.getClientSecret(),
+                paymentIntent.getStatus(), paymentIntent.getMetadata());
+    }
+
+    private GatewayEvent toEvent(Event event) {
+        StripeObject object = event.getDataObjectDeserializer().getObject().orElse(null);
+        if (object instanceof PaymentIntent paymentIntent) {
+            return new GatewayEvent(event.getId(), event.getType(), paymentIntent.getId(), paymentIntent.getMetadata());
+        }
+        if (object instanceof Charge charge) {
+            return new GatewayEvent(event.getId(), event.getType(), charge.getPaymentIntent(), charge.getMetadata());
+        }
+        return new GatewayEvent(event.getId(), event.getType(), null, null);
+    }
+}
@@ -0,0 +1,20 @@
+package com.eshop.service.outbox;
+
+import com.eshop.model.entity.OutboxEvent;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.Instant;
+
+// What sinks receive; id is stable across redeliveries so consumers can drop duplicates
+public record OutboxMessage(Long id,
+                            String aggregateType,
+                            Long aggregateId,
+                            String eventType,
+                            Instant createdAt,
+                            @JsonRawValue String payload) {
+
+    public static OutboxMessage from(OutboxEvent event) {
+        return new OutboxMessage(event.getId(), event.getAggregateType(), event.getAggregateId(),
+                event.getEventType(), event.getCreatedAt(), event.getPayload());
+    }
+}
@@ -0,0 +1,112 @@
+package com.eshop.service.outbox;
+
+import com.eshop.model.entity.OutboxEvent;
+import com.eshop.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Drains outbox_events in id order. A batch is marked published only after every sink accepted it,
+// in the same transaction that locked it, so delivery is at-least-once: a crash or sink failure
+// between delivery and commit redelivers the batch on the next run.
+@Component
+@ConditionalOnProperty(name = "app.outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final List<OutboxSink> sinks;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter delivered;
+    private final Counter failedBatches;
+    private final Timer deliveryLag;
+    private final AtomicLong oldestPendingAgeMs = new AtomicLong();
+
+    @Value("${app.outbox.relay.batch-size}")
+    private int batchSize;
+
+    @Value("${app.outbox.relay.max-batches-per-run}")
+    private int maxBatchesPerRun;
+
+    @Value("${app.outbox.retention-days}")
+    private int retentionDays;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       List<OutboxSink> sinks,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.sinks = sinks;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.delivered = Counter.builder("outbox.relay.delivered")
+                .description("Outbox events delivered to all sinks")
+                .register(meterRegistry);
+        this.failedBatches = Counter.builder("outbox.relay.failed.batches")
+                .description("Outbox batches rolled back because a sink failed")
+                .register(meterRegistry);
+        this.deliveryLag = Timer.builder("outbox.relay.lag")
+                .description("Time from outbox insert to delivery")
+                .register(meterRegistry);
+        Gauge.builder("outbox.relay.oldest.pending.ms", oldestPendingAgeMs, AtomicLong::get)
+                .description("Age of the oldest undelivered outbox event")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay.interval-ms}")
+    public void relay() {
+        try {
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                Integer count = transactionTemplate.execute(status -> relayBatch());
+                if (count == null || count < batchSize) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            failedBatches.increment();
+            logger.error("Outbox relay failed, batch will be retried", e);
+        }
+
+        Instant oldest = outboxEventRepository.findOldestUnpublishedCreatedAt();
+        oldestPendingAgeMs.set(oldest == null ? 0 : Duration.between(oldest, Instant.now()).toMillis());
+    }
+
+    private int relayBatch() {
+        List<OutboxEvent> events = outboxEventRepository.lockUnpublished(PageRequest.of(0, batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        List<OutboxMessage> messages = events.stream().map(OutboxMessage::from).toList();
+        for (OutboxSink sink : sinks) {
+            sink.deliver(messages);
+        }
+
+        Instant now = Instant.now();
+        outboxEventRepository.markPublished(events.stream().map(OutboxEvent::getId).toList(), now);
+        events.forEach(event -> deliveryLag.record(Duration.between(event.getCreatedAt(), now)));
+        delivered.increment(events.size());
+        return events.size();
+    }
+
+    @Scheduled(cron = "${app.outbox.purge-cron}")
+    public void purgePublished() {
+        Instant cutoff = Instant.now().minus(Duration.ofDays(retentionDays));
+        Integer deleted = transactionTemplate.execute(status -> outboxEventRepository.deletePublishedBefore(cutoff));
+        logger.info("Purged {} published outbox events", deleted);
+    }
+}
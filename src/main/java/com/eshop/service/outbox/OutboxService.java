@@ -0,0 +1,56 @@
+package com.eshop.service.outbox;
+
+import com.eshop.model.entity.Order;
+import com.eshop.model.entity.OutboxEvent;
+import com.eshop.repository.OutboxEventRepository;
+import com.eshop.service.OrderHistoryService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Service
+public class OutboxService {
+    public static final String ORDER_CREATED = "order.created";
+    public static final String ORDER_STATUS_CHANGED = "order.status_changed";
+    public static final String PAYMENT_SUCCEEDED = "payment.succeeded";
+    public static final String PAYMENT_FAILED = "payment.failed";
+    public static final String PAYMENT_REFUNDED = "payment.refunded";
+    public static final String PAYMENT_REFUND_REQUIRED = "payment.refund_required";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OrderHistoryService orderHistoryService;
+    private final ObjectMapper objectMapper;
+
+    public OutboxService(OutboxEventRepository outboxEventRepository,
+                         OrderHistoryService orderHistoryService,
+                         ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.orderHistoryService = orderHistoryService;
+        this.objectMapper = objectMapper;
+    }
+
+    // Must join the caller's transaction so the event commits or rolls back with the order change
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void appendOrderEvent(Order order, String eventType) {
+        append("Order", order.getId(), eventType, orderHistoryService.toOrderResponse(order));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(String aggregateType, Long aggregateId, String eventType, Object payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setAggregateType(aggregateType);
+        event.setAggregateId(aggregateId);
+        event.setEventType(eventType);
+        event.setCreatedAt(Instant.now());
+        try {
+            event.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize outbox payload", e);
+        }
+        outboxEventRepository.save(event);
+    }
+}
@@ -0,0 +1,11 @@
+package com.eshop.service.outbox;
+
+import java.util.List;
+
+// Destination for relayed outbox events. A batch that throws is retried on the next relay run,
+// so implementations must tolerate seeing the same message more than once.
+public interface OutboxSink {
+    String getName();
+
+    void deliver(List<OutboxMessage> messages);
+}
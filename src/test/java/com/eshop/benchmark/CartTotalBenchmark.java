@@ -0,0 +1,77 @@
+package com.eshop.benchmark;
+
+import com.eshop.model.entity.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Compares the old BigDecimal cart total computation with the Money minor-unit path.
+// Run with: java -cp target/test-classes:<test classpath> com.eshop.benchmark.CartTotalBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartTotalBenchmark {
+
+    @Param({"3", "20", "100"})
+    private int lines;
+
+    private BigDecimal[] decimalPrices;
+    private Money[] moneyPrices;
+    private int[] quantities;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        decimalPrices = new BigDecimal[lines];
+        moneyPrices = new Money[lines];
+        quantities = new int[lines];
+        for (int i = 0; i < lines; i++) {
+            BigDecimal price = BigDecimal.valueOf(random.nextInt(500_000), 2);
+            decimalPrices[i] = price;
+            moneyPrices[i] = Money.of(price);
+            quantities[i] = 1 + random.nextInt(5);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalTotal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < lines; i++) {
+            total = total.add(decimalPrices[i].multiply(BigDecimal.valueOf(quantities[i])));
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Money moneyTotal() {
+        long total = 0L;
+        for (int i = 0; i < lines; i++) {
+            total = Math.addExact(total, Math.multiplyExact(moneyPrices[i].getMinorUnits(), quantities[i]));
+        }
+        return Money.ofMinor(total);
+    }
+
+    @Benchmark
+    public long moneyToStripeAmount() {
+        return moneyPrices[0].getMinorUnits();
+    }
+
+    @Benchmark
+    public long bigDecimalToStripeAmount() {
+        return decimalPrices[0].multiply(new BigDecimal("100")).longValue();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CartTotalBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,139 @@
+package com.eshop.benchmark;
+
+import com.eshop.EcommerceApplication;
+import com.eshop.model.dto.AddToCartRequest;
+import com.eshop.model.dto.PaymentResponse;
+import com.eshop.model.entity.Order;
+import com.eshop.model.entity.Product;
+import com.eshop.model.entity.Role;
+import com.eshop.model.entity.ShippingInfo;
+import com.eshop.model.entity.User;
+import com.eshop.repository.ProductRepository;
+import com.eshop.repository.UserRepository;
+import com.eshop.service.CartService;
+import com.eshop.service.OrderService;
+import com.eshop.service.PaymentService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// End-to-end checkout throughput on one machine: the full application runs against in-memory H2 with
+// the fake payment gateway, which answers with the configured latency and confirms each intent through
+// a signed webhook to the app's own endpoint. Every operation adds an item to the cart, checks out and
+// creates the payment intent.
+// Run with: java -cp target/test-classes:<test classpath> com.eshop.benchmark.CheckoutThroughputBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 20)
+@Threads(16)
+@Fork(1)
+public class CheckoutThroughputBenchmark {
+
+    private static final int PRODUCTS = 20;
+
+    // Latency of the fake gateway's create call
+    @Param({"fixed:0", "lognormal:80,600"})
+    private String gatewayLatency;
+
+    private ConfigurableApplicationContext context;
+    private CartService cartService;
+    private OrderService orderService;
+    private PaymentService paymentService;
+    private UserRepository userRepository;
+    private Long[] productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(EcommerceApplication.class)
+                .profiles("dev")
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:checkout-bench;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.driver-class-name=org.h2.Driver",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "spring.datasource.hikari.maximum-pool-size=32",
+                        "logging.level.org.springframework=WARN",
+                        "app.outbox.sink.file.enabled=false",
+                        "app.order.archive.enabled=false",
+                        "app.payment.gateway=fake",
+                        "app.payment.fake.create-latency=" + gatewayLatency,
+                        "app.payment.fake.retrieve-latency=" + gatewayLatency,
+                        "app.payment.fake.confirm-delay=uniform:100-500")
+                .run();
+        cartService = context.getBean(CartService.class);
+        orderService = context.getBean(OrderService.class);
+        paymentService = context.getBean(PaymentService.class);
+        userRepository = context.getBean(UserRepository.class);
+
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+        productIds = new Long[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.setName("Benchmark product " + i);
+            product.setDescription("Checkout benchmark");
+            product.setPrice(new BigDecimal("19.99").add(BigDecimal.valueOf(i)));
+            product.setStockQuantity(Integer.MAX_VALUE / 2);
+            productIds[i] = productRepository.save(product).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // One customer per benchmark thread, so carts are never shared
+    @State(Scope.Thread)
+    public static class Shopper {
+        private Long userId;
+        private ShippingInfo shippingInfo;
+
+        @Setup(Level.Trial)
+        public void setUp(CheckoutThroughputBenchmark benchmark) {
+            User user = new User();
+            user.setEmail("shopper-" + UUID.randomUUID() + "@bench.local");
+            user.setPassword("password123");
+            user.setFullName("Benchmark Shopper");
+            user.setEnabled(true);
+            user.setRoles(Set.of(Role.ROLE_USER));
+            userId = benchmark.userRepository.save(user).getId();
+
+            shippingInfo = new ShippingInfo();
+            shippingInfo.setFullName("Benchmark Shopper");
+            shippingInfo.setAddress("1 Main St");
+            shippingInfo.setCity("Springfield");
+            shippingInfo.setState("IL");
+            shippingInfo.setZipCode("62701");
+        }
+    }
+
+    @Benchmark
+    public PaymentResponse checkoutAndPay(Shopper shopper) {
+        AddToCartRequest request = new AddToCartRequest();
+        request.setProductId(productIds[ThreadLocalRandom.current().nextInt(PRODUCTS)]);
+        request.setQuantity(1);
+        cartService.addToCart(shopper.userId, request);
+
+        Order order = orderService.checkout(shopper.userId, shopper.shippingInfo);
+        return paymentService.createPaymentIntent(order.getId(), order.getCurrency(), shopper.shippingInfo);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CheckoutThroughputBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,145 @@
+package com.eshop.benchmark;
+
+import com.eshop.model.entity.Role;
+import com.eshop.security.CredentialsVersionCache;
+import com.eshop.security.CustomUserDetailsService;
+import com.eshop.security.JwtAuthenticationFilter;
+import com.eshop.security.JwtTokenProvider;
+import com.eshop.security.UserPrincipal;
+import com.eshop.service.TokenBlacklistService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Compares the old validate-then-extract double parse with the single-pass parser, with and without the
+// verified-token cache, and measures the whole JwtAuthenticationFilter hot path on top of each, loading the
+// user or, in stateless mode, building the principal from the claims and checking the credentials version.
+// The user lookup is stubbed and the version cache pre-filled so only the token handling is measured.
+// Run with: java -cp target/test-classes:<test classpath> com.eshop.benchmark.JwtFilterBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class JwtFilterBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret";
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> {
+    };
+
+    private SecretKey key;
+    private String token;
+    private JwtTokenProvider uncachedProvider;
+    private JwtTokenProvider cachedProvider;
+    private JwtAuthenticationFilter uncachedFilter;
+    private JwtAuthenticationFilter cachedFilter;
+    private JwtAuthenticationFilter statelessFilter;
+
+    @Setup
+    public void setUp() {
+        key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        uncachedProvider = provider(0);
+        cachedProvider = provider(10_000);
+
+        UserPrincipal principal = new UserPrincipal(1L, "bench@test.com", "password", "Bench User", true,
+                List.of(new SimpleGrantedAuthority(Role.ROLE_USER.name())), 0L);
+        Authentication authentication =
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+        token = cachedProvider.generateToken(authentication);
+
+        uncachedFilter = filter(uncachedProvider, principal, false);
+        cachedFilter = filter(cachedProvider, principal, false);
+        statelessFilter = filter(cachedProvider, principal, true);
+    }
+
+    @Benchmark
+    public String legacyValidateThenExtract() {
+        // What the filter used to do: a freshly built parser for each of the two calls
+        Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody().getSubject();
+    }
+
+    @Benchmark
+    public Claims singlePassUncached() {
+        return uncachedProvider.getVerifiedClaims(token);
+    }
+
+    @Benchmark
+    public Claims singlePassCached() {
+        return cachedProvider.getVerifiedClaims(token);
+    }
+
+    @Benchmark
+    public Object filterUncached() throws Exception {
+        return runFilter(uncachedFilter);
+    }
+
+    @Benchmark
+    public Object filterCached() throws Exception {
+        return runFilter(cachedFilter);
+    }
+
+    @Benchmark
+    public Object filterStateless() throws Exception {
+        return runFilter(statelessFilter);
+    }
+
+    private Object runFilter(JwtAuthenticationFilter filter) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cart");
+        request.setServletPath("/api/cart");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), NO_OP_CHAIN);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    private static JwtTokenProvider provider(int cacheEntries) {
+        JwtTokenProvider provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(provider, "jwtExpirationInMs", 3_600_000);
+        ReflectionTestUtils.setField(provider, "claimsCacheMaxEntries", cacheEntries);
+        provider.init();
+        return provider;
+    }
+
+    private static JwtAuthenticationFilter filter(JwtTokenProvider provider, UserPrincipal principal, boolean stateless) {
+        CustomUserDetailsService userDetailsService = new CustomUserDetailsService(null) {
+            @Override
+            public UserDetails loadUserByUsername(String email) {
+                return principal;
+            }
+        };
+        CredentialsVersionCache credentialsVersionCache =
+                new CredentialsVersionCache(null, 10_000, TimeUnit.HOURS.toMillis(1));
+        credentialsVersionCache.credentialsChanged(principal.getId(), principal.getCredentialsVersion(), true);
+        return new JwtAuthenticationFilter(provider, userDetailsService, new TokenBlacklistService(provider),
+                credentialsVersionCache, stateless);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtFilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,156 @@
+package com.eshop.benchmark;
+
+import com.eshop.service.gateway.JdkHttpStripeClient;
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.net.ApiResource;
+import com.stripe.net.HttpURLConnectionClient;
+import com.stripe.net.LiveStripeResponseGetter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.Http2;
+import org.springframework.boot.web.server.Ssl;
+import org.springframework.boot.web.server.WebServer;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Compares the Stripe SDK's default HttpURLConnection transport with JdkHttpStripeClient against a local
+// stand-in for api.stripe.com: embedded Tomcat serving a canned payment intent over TLS with HTTP/2 enabled.
+// SampleTime reports the latency percentiles, where TLS handshakes on fresh connections show up.
+// Run with: java -cp target/test-classes:<test classpath> com.eshop.benchmark.StripeTransportBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(32)
+@Fork(1)
+public class StripeTransportBenchmark {
+
+    private static final String PASSWORD = "benchmark";
+    private static final String PAYMENT_INTENT = "{\"id\":\"pi_3BenchStandIn\",\"object\":\"payment_intent\","
+            + "\"amount\":2500,\"currency\":\"usd\",\"status\":\"requires_payment_method\","
+            + "\"client_secret\":\"pi_3BenchStandIn_secret_x\",\"metadata\":{\"orderId\":\"1\"}}";
+
+    @Param({"url-connection", "jdk-http2"})
+    private String transport;
+
+    private Path keyStore;
+    private WebServer server;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        keyStore = createKeyStore();
+        server = startStandIn(keyStore);
+        SSLContext sslContext = trusting(keyStore);
+
+        Stripe.apiKey = "sk_test_benchmark";
+        Stripe.overrideApiBase("https://localhost:" + server.getPort());
+        if (transport.equals("jdk-http2")) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .sslContext(sslContext)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .executor(Executors.newFixedThreadPool(8))
+                    .build();
+            ApiResource.setGlobalResponseGetter(new LiveStripeResponseGetter(
+                    new JdkHttpStripeClient(client, Duration.ofSeconds(15), new SimpleMeterRegistry())));
+        } else {
+            HttpsURLConnection.setDefaultSSLSocketFactory(sslContext.getSocketFactory());
+            ApiResource.setGlobalResponseGetter(new LiveStripeResponseGetter(new HttpURLConnectionClient()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.stop();
+        Files.deleteIfExists(keyStore);
+    }
+
+    @Benchmark
+    public PaymentIntent retrievePaymentIntent() throws StripeException {
+        return PaymentIntent.retrieve("pi_3BenchStandIn");
+    }
+
+    private static WebServer startStandIn(Path keyStore) {
+        Ssl ssl = new Ssl();
+        ssl.setKeyStore("file:" + keyStore);
+        ssl.setKeyStorePassword(PASSWORD);
+        ssl.setKeyStoreType("PKCS12");
+        Http2 http2 = new Http2();
+        http2.setEnabled(true);
+
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        factory.setSsl(ssl);
+        factory.setHttp2(http2);
+        WebServer webServer = factory.getWebServer(servletContext -> servletContext
+                .addServlet("stripe", new HttpServlet() {
+                    @Override
+                    protected void service(HttpServletRequest request, HttpServletResponse response)
+                            throws IOException {
+                        response.setContentType("application/json");
+                        response.getOutputStream().write(PAYMENT_INTENT.getBytes(StandardCharsets.UTF_8));
+                    }
+                })
+                .addMapping("/*"));
+        webServer.start();
+        return webServer;
+    }
+
+    // Self-signed certificate for localhost, generated with the JDK's keytool
+    private static Path createKeyStore() throws IOException, InterruptedException {
+        Path path = Files.createTempFile("stripe-stand-in", ".p12");
+        Files.delete(path);
+        Process keytool = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair", "-alias", "stand-in", "-keyalg", "RSA", "-keysize", "2048", "-validity", "1",
+                "-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+                "-storetype", "PKCS12", "-keystore", path.toString(),
+                "-storepass", PASSWORD, "-keypass", PASSWORD)
+                .inheritIO()
+                .start();
+        if (keytool.waitFor() != 0) {
+            throw new IllegalStateException("keytool failed with exit code " + keytool.exitValue());
+        }
+        return path;
+    }
+
+    private static SSLContext trusting(Path keyStorePath) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keyStorePath)) {
+            keyStore.load(in, PASSWORD.toCharArray());
+        }
+        TrustManagerFactory trustManagerFactory =
+                TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+        return sslContext;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StripeTransportBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,127 @@
+package com.eshop.service;
+
+import com.eshop.model.dto.AddToCartRequest;
+import com.eshop.model.dto.CartResponse;
+import com.eshop.model.entity.Cart;
+import com.eshop.model.entity.Product;
+import com.eshop.model.entity.Role;
+import com.eshop.model.entity.User;
+import com.eshop.repository.CartRepository;
+import com.eshop.repository.ProductRepository;
+import com.eshop.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Runs without a test transaction so every mutation commits on its own connection
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({CartService.class, CartResponseCache.class})
+class CartServiceConcurrencyTest {
+
+    private static final int WRITERS = 8;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("concurrent-cart@test.com");
+        user.setPassword("password123");
+        user.setFullName("Cart User");
+        user.setEnabled(true);
+        user.setRoles(Set.of(Role.ROLE_USER));
+        user = userRepository.save(user);
+
+        Cart cart = new Cart();
+        cart.setUser(user);
+        cartRepository.save(cart);
+
+        products = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setDescription("Description " + i);
+            product.setPrice(new BigDecimal("10.00"));
+            product.setStockQuantity(10);
+            products.add(productRepository.save(product));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartRepository.deleteAll();
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentMutationsCommitDistinctVersions() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<CartResponse>> futures = new ArrayList<>();
+        try {
+            for (Product product : products) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    AddToCartRequest request = new AddToCartRequest();
+                    request.setProductId(product.getId());
+                    request.setQuantity(1);
+                    return cartService.addToCart(user.getId(), request);
+                }));
+            }
+            start.countDown();
+
+            List<CartResponse> responses = new ArrayList<>();
+            for (Future<CartResponse> future : futures) {
+                responses.add(future.get(30, TimeUnit.SECONDS));
+            }
+
+            // Every mutation got its own version, and each response holds exactly the changes committed up to it
+            Set<Long> versions = responses.stream().map(CartResponse::getVersion).collect(Collectors.toSet());
+            assertEquals(WRITERS, versions.size());
+            for (CartResponse response : responses) {
+                assertEquals(response.getVersion(), response.getItems().size());
+            }
+
+            CartResponse latest = responses.stream().max(Comparator.comparing(CartResponse::getVersion)).orElseThrow();
+            assertEquals(WRITERS, latest.getItems().size());
+            assertEquals(CartResponse.tagOf(latest.getCartId(), latest.getVersion()),
+                    cartService.getCartTag(user.getId()).orElseThrow());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.eshop.service;
+
+import com.eshop.model.dto.AddToCartRequest;
+import com.eshop.model.dto.CartResponse;
+import com.eshop.model.entity.Cart;
+import com.eshop.model.entity.CartItem;
+import com.eshop.model.entity.Money;
+import com.eshop.model.entity.Product;
+import com.eshop.model.entity.Role;
+import com.eshop.model.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({CartService.class, CartResponseCache.class})
+class CartServiceQueryCountTest {
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User user;
+    private Product laptop;
+    private Product phone;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        user = new User();
+        user.setEmail("cart@test.com");
+        user.setPassword("password123");
+        user.setFullName("Cart User");
+        user.setEnabled(true);
+        user.setRoles(Set.of(Role.ROLE_USER));
+        entityManager.persist(user);
+
+        laptop = createProduct("Laptop", "1299.99");
+        phone = createProduct("Phone", "899.99");
+
+        Cart cart = new Cart();
+        cart.setUser(user);
+        CartItem item = new CartItem();
+        item.setCart(cart);
+        item.setProduct(laptop);
+        item.setQuantity(1);
+        item.setPrice(Money.of(laptop.getPrice()));
+        cart.addItem(item);
+        cart.setTotal(Money.of(laptop.getPrice()));
+        entityManager.persist(cart);
+
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+    }
+
+    @Test
+    void getCartLoadsCartItemsAndProductsInOneStatement() {
+        CartResponse response = cartService.getCartResponse(user.getId());
+
+        assertEquals(1, response.getItems().size());
+        assertEquals("Laptop", response.getItems().get(0).getProductName());
+        assertEquals(1, flushAndCountStatements());
+    }
+
+    @Test
+    void getCartCreatesMissingCartWithOneInsert() {
+        User other = new User();
+        other.setEmail("other@test.com");
+        other.setPassword("password123");
+        other.setFullName("Other User");
+        other.setEnabled(true);
+        entityManager.persist(other);
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        cartService.getCartResponse(other.getId());
+
+        // cart select + cart insert
+        assertEquals(2, flushAndCountStatements());
+    }
+
+    @Test
+    void addToCartUsesLockCartSelectProductSelectAndTwoWrites() {
+        cartService.addToCart(user.getId(), request(phone.getId(), 2));
+
+        // cart lock + cart select + product select + item insert + cart update
+        assertEquals(5, flushAndCountStatements());
+    }
+
+    @Test
+    void addExistingProductReusesFetchedProduct() {
+        cartService.addToCart(user.getId(), request(laptop.getId(), 1));
+
+        // cart lock + cart select + item update + cart update
+        assertEquals(4, flushAndCountStatements());
+    }
+
+    @Test
+    void updateCartItemUsesLockOneSelectAndTwoUpdates() {
+        cartService.updateCartItem(user.getId(), request(laptop.getId(), 5));
+
+        // cart lock + cart select + item update + cart update
+        assertEquals(4, flushAndCountStatements());
+    }
+
+    @Test
+    void removeFromCartUsesLockOneSelectOneDeleteAndOneUpdate() {
+        CartResponse response = cartService.removeFromCart(user.getId(), laptop.getId());
+
+        assertEquals(0, response.getItems().size());
+        // cart lock + cart select + item delete + cart update
+        assertEquals(4, flushAndCountStatements());
+    }
+
+    private long flushAndCountStatements() {
+        entityManager.flush();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Product createProduct(String name, String price) {
+        Product product = new Product();
+        product.setName(name);
+        product.setDescription(name + " description");
+        product.setPrice(new BigDecimal(price));
+        product.setStockQuantity(10);
+        entityManager.persist(product);
+        return product;
+    }
+
+    private AddToCartRequest request(Long productId, int quantity) {
+        AddToCartRequest request = new AddToCartRequest();
+        request.setProductId(productId);
+        request.setQuantity(quantity);
+        return request;
+    }
+}
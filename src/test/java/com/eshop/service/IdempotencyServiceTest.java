@@ -0,0 +1,197 @@
+package com.eshop.service;
+
+import com.eshop.exception.IdempotencyKeyReuseException;
+import com.eshop.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Runs without a test transaction so every claim commits on its own connection. Two service instances
+// share the table to stand in for two nodes; the lease is short so a slow action outlives it many times.
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({JacksonAutoConfiguration.class, IdempotencyServiceTest.Nodes.class})
+@TestPropertySource(properties = {
+        "app.idempotency.ttl-hours=24",
+        "app.idempotency.wait-timeout-ms=5000",
+        "app.idempotency.lease-ms=300",
+        "app.idempotency.purge-cron=-"
+})
+class IdempotencyServiceTest {
+
+    private static final int CALLERS = 8;
+    private static final Long USER_ID = 1L;
+
+    @Autowired
+    private IdempotencyService nodeA;
+
+    @Autowired
+    private IdempotencyService nodeB;
+
+    @Test
+    void concurrentDuplicatesRunTheActionAndCreateTheIntentOnce() throws Exception {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger actions = new AtomicInteger();
+        FakeIntents intents = new FakeIntents();
+
+        List<String> responses = runConcurrently(i -> (i % 2 == 0 ? nodeA : nodeB).execute(
+                "checkout", USER_ID, key, Map.of("cart", 1),
+                () -> {
+                    actions.incrementAndGet();
+                    sleep(200);
+                    return 42L;
+                },
+                intents::getOrCreate));
+
+        assertEquals(1, actions.get());
+        assertEquals(1, intents.created.get());
+        responses.forEach(response -> assertEquals("intent-42", response));
+    }
+
+    @Test
+    void slowActionKeepsItsLeaseAndIsNotRunTwice() throws Exception {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger actions = new AtomicInteger();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> first = executor.submit(() -> nodeA.execute("checkout", USER_ID, key, Map.of("cart", 1),
+                    () -> {
+                        actions.incrementAndGet();
+                        // Four leases long: without renewal the other node would take the key over
+                        sleep(1200);
+                        return 7L;
+                    },
+                    Function.identity()));
+
+            sleep(700);
+            Long second = nodeB.execute("checkout", USER_ID, key, Map.of("cart", 1),
+                    () -> (long) actions.incrementAndGet(), Function.identity());
+
+            assertEquals(7L, first.get(5, TimeUnit.SECONDS));
+            assertEquals(7L, second);
+            assertEquals(1, actions.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void retryAfterFailedResponseResumesWithoutRerunningTheAction() {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger actions = new AtomicInteger();
+        AtomicInteger responses = new AtomicInteger();
+        Function<Long, Long> respond = id -> {
+            if (responses.incrementAndGet() == 1) {
+                throw new RuntimeException("Gateway down");
+            }
+            return id;
+        };
+
+        assertThrows(RuntimeException.class, () -> nodeA.execute("checkout", USER_ID, key, Map.of("cart", 1),
+                () -> (long) (10 + actions.incrementAndGet()), respond));
+        Long retried = nodeB.execute("checkout", USER_ID, key, Map.of("cart", 1),
+                () -> (long) (10 + actions.incrementAndGet()), respond);
+
+        assertEquals(11L, retried);
+        assertEquals(1, actions.get());
+    }
+
+    @Test
+    void keyReusedWithDifferentRequestIsRejected() {
+        String key = UUID.randomUUID().toString();
+        nodeA.execute("checkout", USER_ID, key, Map.of("cart", 1), () -> 5L, Function.identity());
+
+        assertThrows(IdempotencyKeyReuseException.class, () -> nodeB.execute(
+                "checkout", USER_ID, key, Map.of("cart", 2), () -> 6L, Function.identity()));
+        assertThrows(IdempotencyKeyReuseException.class, () -> nodeA.execute(
+                "checkout", USER_ID, key, Map.of("cart", 2), () -> 6L, Function.identity()));
+    }
+
+    private <T> List<T> runConcurrently(Function<Integer, T> call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                int caller = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return call.apply(caller);
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Check-then-create like PaymentService.getOrCreatePaymentIntent: concurrent callers would both create
+    static class FakeIntents {
+        private final AtomicReference<String> intent = new AtomicReference<>();
+        private final AtomicInteger created = new AtomicInteger();
+
+        String getOrCreate(Long orderId) {
+            if (intent.get() == null) {
+                sleep(100);
+                created.incrementAndGet();
+                intent.set("intent-" + orderId);
+            }
+            return intent.get();
+        }
+    }
+
+    @TestConfiguration
+    static class Nodes {
+        @Bean
+        IdempotencyService nodeA(IdempotencyRecordRepository repository, ObjectMapper objectMapper,
+                                 PlatformTransactionManager transactionManager) {
+            return new IdempotencyService(repository, objectMapper, transactionManager, 100);
+        }
+
+        @Bean
+        IdempotencyService nodeB(IdempotencyRecordRepository repository, ObjectMapper objectMapper,
+                                 PlatformTransactionManager transactionManager) {
+            return new IdempotencyService(repository, objectMapper, transactionManager, 100);
+        }
+    }
+}
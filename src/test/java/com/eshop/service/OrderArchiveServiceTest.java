@@ -0,0 +1,192 @@
+package com.eshop.service;
+
+import com.eshop.model.dto.OrderResponse;
+import com.eshop.model.entity.Money;
+import com.eshop.model.entity.Order;
+import com.eshop.model.entity.OrderItem;
+import com.eshop.model.entity.OrderStatus;
+import com.eshop.model.entity.Product;
+import com.eshop.model.entity.Role;
+import com.eshop.model.entity.User;
+import com.eshop.repository.OrderArchiveBlockRepository;
+import com.eshop.repository.OrderHistoryRepository;
+import com.eshop.repository.OrderRepository;
+import com.eshop.service.outbox.OutboxService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Import({OrderArchiveService.class, OrderArchive.class, OrderService.class, OrderHistoryService.class,
+        OutboxService.class, JacksonAutoConfiguration.class, OrderArchiveServiceTest.MetricsConfig.class})
+@TestPropertySource(properties = {
+        "app.order.archive.enabled=true",
+        "app.order.archive.cron=-",
+        "app.order.archive.age-months=12",
+        "app.order.archive.chunk-size=2",
+        "app.order.archive.max-chunks-per-run=10"
+})
+class OrderArchiveServiceTest {
+
+    @Autowired
+    private OrderArchiveService orderArchiveService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderHistoryService orderHistoryService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderHistoryRepository orderHistoryRepository;
+
+    @Autowired
+    private OrderArchiveBlockRepository blockRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @MockBean
+    private CartService cartService;
+
+    @MockBean
+    private ProductService productService;
+
+    private User user;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("archive@test.com");
+        user.setPassword("password123");
+        user.setFullName("Archive User");
+        user.setEnabled(true);
+        user.setRoles(Set.of(Role.ROLE_USER));
+        entityManager.persist(user);
+
+        product = new Product();
+        product.setName("Product");
+        product.setDescription("Description");
+        product.setPrice(new BigDecimal("10.00"));
+        product.setStockQuantity(100);
+        entityManager.persist(product);
+    }
+
+    @Test
+    void userOrdersMergeHotAndArchivedRows() {
+        List<Long> archivable = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            archivable.add(createOrder(OrderStatus.DELIVERED, LocalDateTime.now().minusMonths(24).plusDays(i)));
+        }
+        Long oldPending = createOrder(OrderStatus.PENDING, LocalDateTime.now().minusMonths(18));
+        Long recentDelivered = createOrder(OrderStatus.DELIVERED, LocalDateTime.now().minusDays(3));
+        Long recentPending = createOrder(OrderStatus.PENDING, LocalDateTime.now().minusDays(1));
+        entityManager.flush();
+        entityManager.clear();
+
+        orderArchiveService.archiveCompletedOrders();
+        entityManager.flush();
+        entityManager.clear();
+
+        archivable.forEach(id -> {
+            assertFalse(orderRepository.existsById(id));
+            assertFalse(orderHistoryRepository.existsById(id));
+        });
+        assertTrue(orderRepository.existsById(oldPending));
+        assertTrue(orderRepository.existsById(recentDelivered));
+        assertFalse(blockRepository.findByUserIdOrderById(user.getId()).isEmpty());
+
+        List<Long> expected = new ArrayList<>(List.of(recentPending, recentDelivered, oldPending));
+        for (int i = archivable.size() - 1; i >= 0; i--) {
+            expected.add(archivable.get(i));
+        }
+
+        Sort newestFirst = Sort.by(Sort.Direction.DESC, "createdAt");
+        Page<OrderResponse> first = orderService.getUserOrders(user.getId(), PageRequest.of(0, 4, newestFirst));
+        Page<OrderResponse> second = orderService.getUserOrders(user.getId(), PageRequest.of(1, 4, newestFirst));
+
+        assertEquals(8, first.getTotalElements());
+        assertEquals(4, first.getContent().size());
+        assertEquals(4, second.getContent().size());
+        List<Long> actual = new ArrayList<>();
+        first.getContent().forEach(order -> actual.add(order.getId()));
+        second.getContent().forEach(order -> actual.add(order.getId()));
+        assertEquals(expected, actual);
+        second.getContent().forEach(order -> {
+            assertEquals(1, order.getItems().size());
+            assertEquals(product.getId(), order.getItems().get(0).getProductId());
+        });
+    }
+
+    @Test
+    void reopenedOrderStaysHot() {
+        Long reopened = createOrder(OrderStatus.DELIVERED, LocalDateTime.now().minusMonths(24));
+        entityManager.flush();
+        entityManager.clear();
+
+        orderRepository.findById(reopened).orElseThrow().setStatus(OrderStatus.PROCESSING);
+        entityManager.flush();
+        entityManager.clear();
+
+        orderArchiveService.archiveCompletedOrders();
+        entityManager.flush();
+        entityManager.clear();
+
+        assertTrue(orderRepository.existsById(reopened));
+        assertTrue(blockRepository.findByUserIdOrderById(user.getId()).isEmpty());
+    }
+
+    private Long createOrder(OrderStatus status, LocalDateTime createdAt) {
+        Order order = new Order();
+        order.setUser(user);
+        order.setStatus(status);
+        OrderItem item = new OrderItem();
+        item.setOrder(order);
+        item.setProduct(product);
+        item.setQuantity(1);
+        item.setPrice(Money.of(product.getPrice()));
+        order.getItems().add(item);
+        order.setTotal(item.getPrice());
+        entityManager.persist(order);
+        // Backdated after @PrePersist stamped the current time
+        order.setCreatedAt(createdAt);
+        entityManager.flush();
+        orderHistoryService.record(order);
+        return order.getId();
+    }
+
+    @TestConfiguration
+    static class MetricsConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.eshop.service;
+
+import com.eshop.model.dto.ArchivedOrder;
+import com.eshop.model.dto.OrderResponse;
+import com.eshop.model.entity.Money;
+import com.eshop.model.entity.Order;
+import com.eshop.model.entity.OrderItem;
+import com.eshop.model.entity.OrderStatus;
+import com.eshop.model.entity.PaymentStatus;
+import com.eshop.model.entity.Product;
+import com.eshop.model.entity.Role;
+import com.eshop.model.entity.User;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The streaming fetch size of MySQL Connector/J is not valid on H2, so a plain one is set
+@DataJpaTest
+@Import({OrderExportService.class, OrderArchive.class, JacksonAutoConfiguration.class})
+@TestPropertySource(properties = "app.order.export.fetch-size=100")
+class OrderExportServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(2025, 3, 10);
+    private static final LocalDate TO = LocalDate.of(2025, 3, 12);
+    private static final Long ARCHIVED_ORDER_ID = 9001L;
+
+    @Autowired
+    private OrderExportService orderExportService;
+
+    @Autowired
+    private OrderArchive orderArchive;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User user;
+    private Product shirt;
+    private Product socks;
+    private Long liveOrderId;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("export@test.com");
+        user.setPassword("password123");
+        user.setFullName("Export User");
+        user.setEnabled(true);
+        user.setRoles(Set.of(Role.ROLE_USER));
+        entityManager.persist(user);
+
+        shirt = createProduct("Shirt, \"Deluxe\"", "10.00");
+        socks = createProduct("Socks", "2.50");
+
+        liveOrderId = createOrder(LocalDateTime.of(2025, 3, 10, 10, 15));
+        createOrder(LocalDateTime.of(2025, 3, 20, 8, 0));
+        archiveOrder(LocalDateTime.of(2025, 3, 11, 9, 0));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void csvQuotesTextAndAppendsArchivedRows() throws IOException {
+        List<String> lines = export(OrderExportService.Format.CSV);
+
+        assertEquals(List.of(
+                "order_id,user_id,created_at,paid_at,status,payment_status,currency,order_total,payment_id," +
+                        "product_id,product_name,quantity,unit_price,line_total,archived",
+                liveOrderId + "," + user.getId() + ",2025-03-10 10:15:00,2025-03-10 10:20:00,PROCESSING,PAID,USD," +
+                        "22.50,pi_" + liveOrderId + "," + shirt.getId() + ",\"Shirt, \"\"Deluxe\"\"\",2,10.00,20.00,false",
+                liveOrderId + "," + user.getId() + ",2025-03-10 10:15:00,2025-03-10 10:20:00,PROCESSING,PAID,USD," +
+                        "22.50,pi_" + liveOrderId + "," + socks.getId() + ",Socks,1,2.50,2.50,false",
+                ARCHIVED_ORDER_ID + "," + user.getId() + ",2025-03-11 09:00:00,2025-03-11 09:05:00,DELIVERED,PAID,EUR," +
+                        "10.00,pi_archived," + socks.getId() + ",Socks,4,2.50,10.00,true"
+        ), lines);
+    }
+
+    @Test
+    void ndjsonGroupsItemsUnderTheirOrder() throws IOException {
+        List<String> lines = export(OrderExportService.Format.NDJSON);
+        assertEquals(2, lines.size());
+
+        JsonNode live = objectMapper.readTree(lines.get(0));
+        assertEquals(liveOrderId.longValue(), live.get("orderId").asLong());
+        assertEquals("2025-03-10 10:15:00", live.get("createdAt").asText());
+        assertEquals("USD", live.get("currency").asText());
+        assertFalse(live.get("archived").asBoolean());
+        assertEquals(2, live.get("items").size());
+        assertEquals("Shirt, \"Deluxe\"", live.get("items").get(0).get("productName").asText());
+        assertEquals(20.0, live.get("items").get(0).get("lineTotal").asDouble());
+        assertEquals(socks.getId().longValue(), live.get("items").get(1).get("productId").asLong());
+
+        JsonNode archived = objectMapper.readTree(lines.get(1));
+        assertEquals(ARCHIVED_ORDER_ID.longValue(), archived.get("orderId").asLong());
+        assertEquals("2025-03-11 09:05:00", archived.get("paidAt").asText());
+        assertEquals("EUR", archived.get("currency").asText());
+        assertEquals("pi_archived", archived.get("paymentId").asText());
+        assertTrue(archived.get("archived").asBoolean());
+        assertEquals(1, archived.get("items").size());
+        assertEquals(4, archived.get("items").get(0).get("quantity").asInt());
+    }
+
+    private List<String> export(OrderExportService.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        orderExportService.export(FROM, TO, format, out);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            return new String(gzip.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+    }
+
+    private Product createProduct(String name, String price) {
+        Product product = new Product();
+        product.setName(name);
+        product.setDescription(name);
+        product.setPrice(new BigDecimal(price));
+        product.setStockQuantity(100);
+        entityManager.persist(product);
+        return product;
+    }
+
+    // 2 shirts and 1 pair of socks: 22.50
+    private Long createOrder(LocalDateTime createdAt) {
+        Order order = new Order();
+        order.setUser(user);
+        order.setStatus(OrderStatus.PROCESSING);
+        order.setPaymentStatus(PaymentStatus.PAID);
+        addItem(order, shirt, 2);
+        addItem(order, socks, 1);
+        order.setTotal(Money.of(new BigDecimal("22.50")));
+        entityManager.persist(order);
+        // Backdated after @PrePersist stamped the current time
+        order.setCreatedAt(createdAt);
+        order.setPaidAt(createdAt.plusMinutes(5));
+        order.setPaymentId("pi_" + order.getId());
+        entityManager.flush();
+        return order.getId();
+    }
+
+    private void addItem(Order order, Product product, int quantity) {
+        OrderItem item = new OrderItem();
+        item.setOrder(order);
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        item.setPrice(Money.of(product.getPrice()));
+        order.getItems().add(item);
+    }
+
+    private void archiveOrder(LocalDateTime createdAt) {
+        OrderResponse.OrderItemDTO item = new OrderResponse.OrderItemDTO();
+        item.setProductId(socks.getId());
+        item.setProductName(socks.getName());
+        item.setQuantity(4);
+        item.setPrice(new BigDecimal("2.50"));
+        item.setSubtotal(new BigDecimal("10.00"));
+
+        OrderResponse order = new OrderResponse();
+        order.setId(ARCHIVED_ORDER_ID);
+        order.setTotal(new BigDecimal("10.00"));
+        order.setStatus(OrderStatus.DELIVERED);
+        order.setPaymentStatus(PaymentStatus.PAID);
+        order.setCreatedAt(createdAt);
+        order.setItems(List.of(item));
+
+        ArchivedOrder archived = new ArchivedOrder();
+        archived.setUserId(user.getId());
+        archived.setCurrency("EUR");
+        archived.setPaymentId("pi_archived");
+        archived.setPaidAt(createdAt.plusMinutes(5));
+        archived.setOrder(order);
+        orderArchive.append(List.of(archived));
+    }
+}
@@ -0,0 +1,133 @@
+package com.eshop.service;
+
+import com.eshop.model.dto.OrderResponse;
+import com.eshop.model.entity.Money;
+import com.eshop.model.entity.Order;
+import com.eshop.model.entity.OrderItem;
+import com.eshop.model.entity.Product;
+import com.eshop.model.entity.Role;
+import com.eshop.model.entity.User;
+import com.eshop.service.outbox.OutboxService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({OrderService.class, OrderHistoryService.class, OrderArchive.class, OutboxService.class,
+        JacksonAutoConfiguration.class})
+class OrderServiceQueryCountTest {
+
+    // one range scan on order_history + the page count + the archive summary
+    private static final long PAGE_QUERY_BUDGET = 3;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderHistoryService orderHistoryService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private CartService cartService;
+
+    @MockBean
+    private ProductService productService;
+
+    private Statistics statistics;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        user = new User();
+        user.setEmail("orders@test.com");
+        user.setPassword("password123");
+        user.setFullName("Order User");
+        user.setEnabled(true);
+        user.setRoles(Set.of(Role.ROLE_USER));
+        entityManager.persist(user);
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setDescription("Description " + i);
+            product.setPrice(new BigDecimal("10.00").add(BigDecimal.valueOf(i)));
+            product.setStockQuantity(100);
+            entityManager.persist(product);
+            products.add(product);
+        }
+
+        for (int i = 0; i < 12; i++) {
+            Order order = new Order();
+            order.setUser(user);
+            Money total = Money.ZERO;
+            for (Product product : products) {
+                OrderItem item = new OrderItem();
+                item.setOrder(order);
+                item.setProduct(product);
+                item.setQuantity(2);
+                item.setPrice(Money.of(product.getPrice()));
+                order.getItems().add(item);
+                total = total.plus(item.getPrice().times(2));
+            }
+            order.setTotal(total);
+            entityManager.persist(order);
+            orderHistoryService.record(order);
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+    }
+
+    @Test
+    void firstPageStaysWithinQueryBudget() {
+        Page<OrderResponse> page = orderService.getUserOrders(user.getId(),
+                PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "createdAt")));
+
+        assertEquals(10, page.getContent().size());
+        assertEquals(12, page.getTotalElements());
+        page.getContent().forEach(order -> {
+            assertEquals(3, order.getItems().size());
+            order.getItems().forEach(item -> assertTrue(item.getProductName().startsWith("Product")));
+        });
+        assertTrue(statistics.getPrepareStatementCount() <= PAGE_QUERY_BUDGET,
+                "getUserOrders used " + statistics.getPrepareStatementCount() + " statements");
+    }
+
+    @Test
+    void lastPageStaysWithinQueryBudget() {
+        Page<OrderResponse> page = orderService.getUserOrders(user.getId(),
+                PageRequest.of(1, 10, Sort.by(Sort.Direction.DESC, "createdAt")));
+
+        assertEquals(2, page.getContent().size());
+        assertTrue(statistics.getPrepareStatementCount() <= PAGE_QUERY_BUDGET,
+                "getUserOrders used " + statistics.getPrepareStatementCount() + " statements");
+    }
+}
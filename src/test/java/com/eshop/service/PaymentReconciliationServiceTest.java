@@ -0,0 +1,200 @@
+package com.eshop.service;
+
+import com.eshop.config.WebhookConfig;
+import com.eshop.model.dto.PaymentReconciliationReport;
+import com.eshop.model.entity.Money;
+import com.eshop.model.entity.Order;
+import com.eshop.model.entity.OrderItem;
+import com.eshop.model.entity.OrderStatus;
+import com.eshop.model.entity.PaymentStatus;
+import com.eshop.model.entity.Product;
+import com.eshop.model.entity.Role;
+import com.eshop.model.entity.ShippingInfo;
+import com.eshop.model.entity.User;
+import com.eshop.repository.OrderRepository;
+import com.eshop.repository.ProductRepository;
+import com.eshop.repository.UserRepository;
+import com.eshop.service.gateway.FakePaymentGateway;
+import com.eshop.service.gateway.PaymentIntentRequest;
+import com.eshop.service.outbox.OutboxService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+// Webhooks are switched off on the fake gateway, so every settled intent is a missed webhook
+@DataJpaTest
+@Import({PaymentReconciliationService.class, OrderService.class, OrderHistoryService.class, OutboxService.class,
+        FakePaymentGateway.class, WebhookConfig.class, JacksonAutoConfiguration.class,
+        PaymentReconciliationServiceTest.MetricsConfig.class})
+@TestPropertySource(properties = {
+        "stripe.webhook-secret=whsec_test",
+        "app.payment.gateway=fake",
+        "app.payment.fake.create-latency=fixed:0",
+        "app.payment.fake.retrieve-latency=fixed:0",
+        "app.payment.fake.failure-rate=0",
+        "app.payment.fake.timeout-rate=0",
+        "app.payment.fake.auto-confirm=false",
+        "app.payment.fake.webhook.enabled=false",
+        "app.payment.reconciliation.page-size=2",
+        "app.payment.reconciliation.requests-per-second=1000",
+        "app.payment.reconciliation.stale-after-minutes=30"
+})
+class PaymentReconciliationServiceTest {
+
+    @Autowired
+    private PaymentReconciliationService reconciliationService;
+
+    @Autowired
+    private FakePaymentGateway fakeGateway;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private CartService cartService;
+
+    @MockBean
+    private ProductService productService;
+
+    @MockBean
+    private OrderArchive orderArchive;
+
+    @MockBean
+    private SalesRollupService salesRollupService;
+
+    @MockBean
+    private PaymentIntentCache paymentIntentCache;
+
+    private User user;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail("reconcile@test.com");
+        user.setPassword("password123");
+        user.setFullName("Reconcile User");
+        user.setEnabled(true);
+        user.setRoles(Set.of(Role.ROLE_USER));
+        user = userRepository.save(user);
+
+        product = new Product();
+        product.setName("Product");
+        product.setDescription("Description");
+        product.setPrice(new BigDecimal("12.50"));
+        product.setStockQuantity(10);
+        product = productRepository.save(product);
+    }
+
+    @Test
+    void repairsOrdersWhoseWebhooksWereMissed() {
+        Long succeeded = createOrderWithIntent("succeeded");
+        Long canceled = createOrderWithIntent("canceled");
+        Long inProgress = createOrderWithIntent("requires_payment_method");
+        Long recent = createOrderWithIntent("succeeded");
+        orderRepository.findById(recent).orElseThrow().setCreatedAt(LocalDateTime.now());
+        orderRepository.flush();
+
+        PaymentReconciliationReport report = reconciliationService.reconcile();
+
+        assertEquals(3, report.getOrdersChecked());
+        assertEquals(1, report.getRepairedPaid());
+        assertEquals(1, report.getRepairedFailed());
+        assertEquals(0, report.getLookupFailures());
+        assertEquals(2, report.getDiscrepancies().size());
+        assertFalse(report.isAborted());
+
+        Order paid = orderRepository.findById(succeeded).orElseThrow();
+        assertEquals(PaymentStatus.PAID, paid.getPaymentStatus());
+        assertEquals(OrderStatus.PROCESSING, paid.getStatus());
+
+        Order failed = orderRepository.findById(canceled).orElseThrow();
+        assertEquals(PaymentStatus.FAILED, failed.getPaymentStatus());
+        assertEquals(OrderStatus.CANCELLED, failed.getStatus());
+
+        assertEquals(PaymentStatus.PENDING, orderRepository.findById(inProgress).orElseThrow().getPaymentStatus());
+        // Still inside the grace period, left for its webhook
+        assertEquals(PaymentStatus.PENDING, orderRepository.findById(recent).orElseThrow().getPaymentStatus());
+        verify(salesRollupService, times(1)).recordSale(any(Order.class));
+    }
+
+    @Test
+    void unknownIntentIsReportedWithoutTouchingTheOrder() {
+        Long orderId = createOrder("pi_missing");
+
+        PaymentReconciliationReport report = reconciliationService.reconcile();
+
+        assertEquals(1, report.getOrdersChecked());
+        assertEquals(1, report.getLookupFailures());
+        assertEquals(PaymentReconciliationReport.Action.LOOKUP_FAILED, report.getDiscrepancies().get(0).getAction());
+        assertEquals(PaymentStatus.PENDING, orderRepository.findById(orderId).orElseThrow().getPaymentStatus());
+    }
+
+    private Long createOrderWithIntent(String gatewayStatus) {
+        PaymentIntentRequest request = new PaymentIntentRequest();
+        request.setAmountMinor(2500);
+        request.setCurrency("USD");
+        String paymentIntentId = fakeGateway.createIntent(request).id();
+        fakeGateway.settle(paymentIntentId, gatewayStatus);
+        return createOrder(paymentIntentId);
+    }
+
+    private Long createOrder(String paymentIntentId) {
+        ShippingInfo shippingInfo = new ShippingInfo();
+        shippingInfo.setFullName("Reconcile User");
+        shippingInfo.setAddress("1 Main St");
+        shippingInfo.setCity("Springfield");
+        shippingInfo.setState("IL");
+        shippingInfo.setZipCode("62701");
+
+        Order order = new Order();
+        order.setUser(user);
+        order.setShippingInfo(shippingInfo);
+        order.setPaymentId(paymentIntentId);
+        OrderItem item = new OrderItem();
+        item.setOrder(order);
+        item.setProduct(product);
+        item.setQuantity(2);
+        item.setPrice(Money.of(product.getPrice()));
+        order.getItems().add(item);
+        order.setTotal(item.getPrice().times(2));
+        order = orderRepository.save(order);
+        // Past the grace period
+        order.setCreatedAt(LocalDateTime.now().minusHours(1));
+        orderRepository.flush();
+        return order.getId();
+    }
+
+    @TestConfiguration
+    static class MetricsConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
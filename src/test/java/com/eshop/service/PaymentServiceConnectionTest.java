@@ -0,0 +1,268 @@
+package com.eshop.service;
+
+import com.eshop.model.dto.PaymentResponse;
+import com.eshop.model.entity.Money;
+import com.eshop.model.entity.Order;
+import com.eshop.model.entity.OrderItem;
+import com.eshop.model.entity.OrderStatus;
+import com.eshop.model.entity.PaymentStatus;
+import com.eshop.model.entity.Product;
+import com.eshop.model.entity.Role;
+import com.eshop.model.entity.ShippingInfo;
+import com.eshop.model.entity.User;
+import com.eshop.repository.OrderHistoryRepository;
+import com.eshop.repository.OrderRepository;
+import com.eshop.repository.ProductRepository;
+import com.eshop.repository.UserRepository;
+import com.eshop.service.gateway.GatewayEvent;
+import com.eshop.service.gateway.GatewayPaymentIntent;
+import com.eshop.service.gateway.PaymentGateway;
+import com.eshop.service.gateway.PaymentGatewayException;
+import com.eshop.service.gateway.PaymentIntentRequest;
+import com.eshop.service.outbox.OutboxService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Runs without a test transaction so every connection the service takes is visible to the tracker
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({PaymentService.class, OrderService.class, OrderHistoryService.class, OutboxService.class,
+        JacksonAutoConfiguration.class, PaymentServiceConnectionTest.ConnectionTrackingConfig.class})
+class PaymentServiceConnectionTest {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderHistoryRepository orderHistoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @MockBean
+    private CartService cartService;
+
+    @MockBean
+    private ProductService productService;
+
+    @MockBean
+    private OrderArchive orderArchive;
+
+    @MockBean
+    private SalesRollupService salesRollupService;
+
+    @MockBean
+    private PaymentGateway paymentGateway;
+
+    @MockBean
+    private PaymentIntentCache paymentIntentCache;
+
+    private Long orderId;
+    private ShippingInfo shippingInfo;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setEmail("payments@test.com");
+        user.setPassword("password123");
+        user.setFullName("Payment User");
+        user.setEnabled(true);
+        user.setRoles(Set.of(Role.ROLE_USER));
+        user = userRepository.save(user);
+
+        Product product = new Product();
+        product.setName("Product");
+        product.setDescription("Description");
+        product.setPrice(new BigDecimal("12.50"));
+        product.setStockQuantity(10);
+        product = productRepository.save(product);
+
+        shippingInfo = new ShippingInfo();
+        shippingInfo.setFullName("Payment User");
+        shippingInfo.setAddress("1 Main St");
+        shippingInfo.setCity("Springfield");
+        shippingInfo.setState("IL");
+        shippingInfo.setZipCode("62701");
+
+        Order order = new Order();
+        order.setUser(user);
+        order.setShippingInfo(shippingInfo);
+        OrderItem item = new OrderItem();
+        item.setOrder(order);
+        item.setProduct(product);
+        item.setQuantity(2);
+        item.setPrice(Money.of(product.getPrice()));
+        order.getItems().add(item);
+        order.setTotal(item.getPrice().times(2));
+        orderId = orderRepository.save(order).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderHistoryRepository.deleteAll();
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void noConnectionIsHeldWhileTheGatewayCreatesTheIntent() {
+        ConnectionTrackingDataSource tracking = (ConnectionTrackingDataSource) dataSource;
+        List<Integer> openDuringCall = new ArrayList<>();
+        List<String> idempotencyKeys = new ArrayList<>();
+
+        when(paymentGateway.createIntent(any(PaymentIntentRequest.class))).thenAnswer(invocation -> {
+            openDuringCall.add(tracking.getOpenConnections());
+            idempotencyKeys.add(invocation.<PaymentIntentRequest>getArgument(0).getIdempotencyKey());
+            return new GatewayPaymentIntent("pi_test", "pi_test_secret", "requires_payment_method", Map.of());
+        });
+
+        PaymentResponse response = paymentService.createPaymentIntent(orderId, "USD", shippingInfo);
+        assertEquals("pi_test", response.getPaymentIntentId());
+        assertEquals("pi_test_secret", response.getClientSecret());
+
+        assertEquals(List.of(0), openDuringCall);
+        assertEquals(List.of("order-" + orderId + "-intent"), idempotencyKeys);
+        assertEquals(0, tracking.getOpenConnections());
+
+        Order order = orderRepository.findById(orderId).orElseThrow();
+        assertEquals("pi_test", order.getPaymentId());
+        assertNull(order.getPaymentIntentRequestedAt());
+    }
+
+    @Test
+    void lostGatewayResponseLeavesIntentPendingForRecovery() {
+        ConnectionTrackingDataSource tracking = (ConnectionTrackingDataSource) dataSource;
+        List<Integer> openDuringCall = new ArrayList<>();
+
+        when(paymentGateway.createIntent(any(PaymentIntentRequest.class))).thenAnswer(invocation -> {
+            openDuringCall.add(tracking.getOpenConnections());
+            throw new PaymentGatewayException("Read timed out", null, true);
+        });
+
+        assertThrows(RuntimeException.class,
+                () -> paymentService.createPaymentIntent(orderId, "USD", shippingInfo));
+
+        assertEquals(List.of(0), openDuringCall);
+        assertEquals(0, tracking.getOpenConnections());
+
+        Order order = orderRepository.findById(orderId).orElseThrow();
+        assertNull(order.getPaymentId());
+        assertNotNull(order.getPaymentIntentRequestedAt());
+    }
+
+    @Test
+    void paymentSucceedingAfterCancellationFlagsRefundInsteadOfReopening() {
+        Order cancelled = orderRepository.findById(orderId).orElseThrow();
+        cancelled.setStatus(OrderStatus.CANCELLED);
+        cancelled.setPaymentId("pi_cancelled");
+        orderRepository.save(cancelled);
+
+        paymentService.processWebhookEvent(
+                new GatewayEvent("evt_late", "payment_intent.succeeded", "pi_cancelled", Map.of()));
+
+        Order order = orderRepository.findById(orderId).orElseThrow();
+        assertEquals(OrderStatus.CANCELLED, order.getStatus());
+        assertEquals(PaymentStatus.REFUND_PENDING, order.getPaymentStatus());
+        assertNull(order.getPaidAt());
+        verify(salesRollupService, never()).recordSale(any());
+    }
+
+    @TestConfiguration
+    static class ConnectionTrackingConfig {
+        @Bean
+        static BeanPostProcessor connectionTrackingPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource && !(bean instanceof ConnectionTrackingDataSource)) {
+                        return new ConnectionTrackingDataSource(dataSource);
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    // Counts connections handed out and not yet closed (returned to the pool)
+    static class ConnectionTrackingDataSource extends DelegatingDataSource {
+        private final AtomicInteger openConnections = new AtomicInteger();
+
+        ConnectionTrackingDataSource(DataSource target) {
+            super(target);
+        }
+
+        int getOpenConnections() {
+            return openConnections.get();
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return track(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return track(super.getConnection(username, password));
+        }
+
+        private Connection track(Connection connection) {
+            openConnections.incrementAndGet();
+            AtomicBoolean closed = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("close") && closed.compareAndSet(false, true)) {
+                            openConnections.decrementAndGet();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
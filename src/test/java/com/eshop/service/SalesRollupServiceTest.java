@@ -0,0 +1,147 @@
+package com.eshop.service;
+
+import com.eshop.exception.InvalidRequestException;
+import com.eshop.model.dto.SalesAnalyticsResponse;
+import com.eshop.model.dto.TopProductsResponse;
+import com.eshop.model.entity.Money;
+import com.eshop.model.entity.Order;
+import com.eshop.model.entity.OrderItem;
+import com.eshop.model.entity.Product;
+import com.eshop.model.entity.SalesRollup.Granularity;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Runs the native upserts on H2 in MySQL mode (see src/test/resources/config/application.properties)
+@DataJpaTest
+@Import(SalesRollupService.class)
+class SalesRollupServiceTest {
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Product shirt;
+    private Product socks;
+    private LocalDateTime paidAt;
+
+    @BeforeEach
+    void setUp() {
+        shirt = createProduct("Shirt", "10.00");
+        socks = createProduct("Socks", "2.50");
+        paidAt = LocalDate.now().minusDays(1).atTime(10, 15);
+    }
+
+    @Test
+    void salesAndRefundsAccumulateInTheirBuckets() {
+        Order first = createOrder();
+        salesRollupService.recordSale(first);
+        salesRollupService.recordSale(createOrder());
+        salesRollupService.recordRefund(first);
+        entityManager.clear();
+
+        LocalDate yesterday = paidAt.toLocalDate();
+        SalesAnalyticsResponse daily = salesRollupService.getSales(Granularity.DAY, yesterday, LocalDate.now(), "USD");
+        assertEquals(2, daily.getPoints().size());
+        SalesAnalyticsResponse.Point saleDay = daily.getPoints().get(0);
+        assertEquals(yesterday.atStartOfDay(), saleDay.getBucketStart());
+        assertEquals(2, saleDay.getOrders());
+        assertEquals(12, saleDay.getUnits());
+        assertEquals(new BigDecimal("60.00"), saleDay.getRevenue());
+        SalesAnalyticsResponse.Point refundDay = daily.getPoints().get(1);
+        assertEquals(1, refundDay.getRefunds());
+        assertEquals(new BigDecimal("30.00"), refundDay.getRefunded());
+        assertEquals(new BigDecimal("30.00"), daily.getTotalRevenue());
+
+        SalesAnalyticsResponse hourly = salesRollupService.getSales(Granularity.HOUR, yesterday, yesterday, "USD");
+        assertEquals(1, hourly.getPoints().size());
+        assertEquals(yesterday.atTime(10, 0), hourly.getPoints().get(0).getBucketStart());
+        assertEquals(2, hourly.getPoints().get(0).getOrders());
+
+        TopProductsResponse top = salesRollupService.getTopProducts(yesterday, LocalDate.now(), "USD", 10);
+        assertEquals(2, top.getProducts().size());
+        TopProductsResponse.ProductLine best = top.getProducts().get(0);
+        assertEquals(shirt.getId(), best.getProductId());
+        assertEquals(2, best.getUnits());
+        assertEquals(new BigDecimal("20.00"), best.getRevenue());
+        TopProductsResponse.ProductLine second = top.getProducts().get(1);
+        assertEquals(socks.getId(), second.getProductId());
+        assertEquals(4, second.getUnits());
+        assertEquals(new BigDecimal("10.00"), second.getRevenue());
+    }
+
+    @Test
+    void topProductsAreRankedWithinOneCurrency() {
+        salesRollupService.recordSale(createOrder());
+        Order euro = createOrder();
+        euro.setCurrency("EUR");
+        salesRollupService.recordSale(euro);
+        salesRollupService.recordSale(euro);
+        entityManager.clear();
+
+        LocalDate yesterday = paidAt.toLocalDate();
+        TopProductsResponse usd = salesRollupService.getTopProducts(yesterday, yesterday, "USD", 10);
+        assertEquals("USD", usd.getCurrency());
+        assertEquals(2, usd.getProducts().get(0).getUnits());
+        assertEquals(new BigDecimal("20.00"), usd.getProducts().get(0).getRevenue());
+
+        TopProductsResponse eur = salesRollupService.getTopProducts(yesterday, yesterday, "EUR", 10);
+        assertEquals(2, eur.getProducts().size());
+        assertEquals(shirt.getId(), eur.getProducts().get(0).getProductId());
+        assertEquals(4, eur.getProducts().get(0).getUnits());
+        assertEquals(new BigDecimal("40.00"), eur.getProducts().get(0).getRevenue());
+
+        assertThrows(InvalidRequestException.class,
+                () -> salesRollupService.getTopProducts(yesterday, yesterday, "DOLLARS", 10));
+    }
+
+    @Test
+    void unknownCurrencyIsRejectedAsBadRequest() {
+        LocalDate today = LocalDate.now();
+        assertThrows(InvalidRequestException.class,
+                () -> salesRollupService.getSales(Granularity.DAY, today, today, "DOLLARS"));
+    }
+
+    private Product createProduct(String name, String price) {
+        Product product = new Product();
+        product.setName(name);
+        product.setDescription(name);
+        product.setPrice(new BigDecimal(price));
+        product.setStockQuantity(100);
+        entityManager.persist(product);
+        return product;
+    }
+
+    // 2 shirts and 4 pairs of socks: 6 units, 30.00
+    private Order createOrder() {
+        Order order = new Order();
+        order.setPaidAt(paidAt);
+        addItem(order, shirt, 2);
+        addItem(order, socks, 4);
+        order.setTotal(order.getItems().stream()
+                .map(item -> item.getPrice().times(item.getQuantity()))
+                .reduce(Money.ZERO, Money::plus));
+        return order;
+    }
+
+    private void addItem(Order order, Product product, int quantity) {
+        OrderItem item = new OrderItem();
+        item.setOrder(order);
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        item.setPrice(Money.of(product.getPrice()));
+        order.getItems().add(item);
+    }
+}
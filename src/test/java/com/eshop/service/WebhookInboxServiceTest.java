@@ -0,0 +1,114 @@
+package com.eshop.service;
+
+import com.eshop.model.entity.WebhookInboxEvent;
+import com.eshop.repository.WebhookInboxRepository;
+import com.eshop.service.gateway.GatewayEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Runs without a test transaction so the workers see the stored events
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({WebhookInboxService.class, WebhookInboxServiceTest.MetricsConfig.class})
+@TestPropertySource(properties = {
+        "app.webhook.inbox.workers=2",
+        "app.webhook.inbox.batch-size=" + WebhookInboxServiceTest.BATCH_SIZE,
+        "app.webhook.inbox.max-attempts=3",
+        "app.webhook.inbox.backoff-base-ms=1000",
+        "app.webhook.inbox.backoff-max-ms=60000",
+        "app.webhook.inbox.lease-ms=60000",
+        "app.webhook.inbox.retention-days=30",
+        "app.webhook.inbox.poll-interval-ms=60000",
+        "app.webhook.inbox.purge-cron=-"
+})
+class WebhookInboxServiceTest {
+
+    static final int BATCH_SIZE = 5;
+
+    @Autowired
+    private WebhookInboxService webhookInboxService;
+
+    @Autowired
+    private WebhookInboxRepository webhookInboxRepository;
+
+    @MockBean
+    private PaymentService paymentService;
+
+    @AfterEach
+    void tearDown() {
+        webhookInboxRepository.deleteAll();
+    }
+
+    @Test
+    void fullBatchOfBackedOffEventsDoesNotStarveLaterEvents() {
+        Instant later = Instant.now().plus(1, ChronoUnit.HOURS);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            store("evt_backoff_" + i, "pi_backoff_" + i, later);
+        }
+        WebhookInboxEvent ready = store("evt_ready", "pi_ready", Instant.now().minusSeconds(1));
+        GatewayEvent event = new GatewayEvent("evt_ready", "payment_intent.succeeded", "pi_ready", Map.of());
+        when(paymentService.parseWebhookEvent(ready.getPayload())).thenReturn(event);
+
+        webhookInboxService.dispatch();
+
+        verify(paymentService, timeout(5000)).processWebhookEvent(eq(event));
+        webhookInboxRepository.findAll().stream()
+                .filter(stored -> !stored.getId().equals(ready.getId()))
+                .forEach(stored -> assertNull(stored.getClaimToken()));
+    }
+
+    @Test
+    void eventWaitsBehindAnEarlierPendingEventOfItsKey() {
+        store("evt_first", "pi_shared", Instant.now().plus(1, ChronoUnit.HOURS));
+        WebhookInboxEvent second = store("evt_second", "pi_shared", Instant.now().minusSeconds(1));
+        WebhookInboxEvent other = store("evt_other", "pi_other", Instant.now().minusSeconds(1));
+        GatewayEvent event = new GatewayEvent("evt_other", "payment_intent.succeeded", "pi_other", Map.of());
+        when(paymentService.parseWebhookEvent(other.getPayload())).thenReturn(event);
+
+        webhookInboxService.dispatch();
+
+        verify(paymentService, timeout(5000)).processWebhookEvent(eq(event));
+        // Claims are taken on the dispatching thread, so an unclaimed event was never queued
+        assertNull(webhookInboxRepository.findById(second.getId()).orElseThrow().getClaimToken());
+    }
+
+    private WebhookInboxEvent store(String eventId, String orderingKey, Instant nextAttemptAt) {
+        WebhookInboxEvent event = new WebhookInboxEvent();
+        event.setEventId(eventId);
+        event.setEventType("payment_intent.succeeded");
+        event.setOrderingKey(orderingKey);
+        event.setPayload("{\"id\":\"" + eventId + "\"}");
+        event.setReceivedAt(Instant.now());
+        event.setNextAttemptAt(nextAttemptAt);
+        return webhookInboxRepository.save(event);
+    }
+
+    @TestConfiguration
+    static class MetricsConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}